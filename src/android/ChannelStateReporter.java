@@ -0,0 +1,97 @@
+package nl.klaasmaakt.cordova.notifications_permission;
+
+import android.app.NotificationChannel;
+import android.app.NotificationChannelGroup;
+import android.app.NotificationManager;
+import android.content.Context;
+import android.os.Build;
+import androidx.core.app.NotificationManagerCompat;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Reports the importance and blocked state of all notification channels and channel groups
+ * of the app in one go. Remembers what has been reported, so a report can be limited to the
+ * channels and groups that changed since the previous one.
+ */
+public class ChannelStateReporter {
+
+    // Packed state per id as last reported: importance in the low bits, BLOCKED on top
+    private static final int BLOCKED = 1 << 16;
+    private final Map<String, Integer> mReportedChannels = new HashMap<>();
+    private final Map<String, Integer> mReportedGroups = new HashMap<>();
+
+    /**
+     * @param context      The context to get the notification manager from.
+     * @param onlyChanged  Whether to leave out what did not change since the previous report.
+     * @return The report, e.g. {"enabled":true,"channels":[{"id":"news","name":"News","group":"feeds","importance":3,"blocked":false}],"groups":[{"id":"feeds","name":"Feeds","blocked":false}],"removedChannels":[],"removedGroups":[]}
+     * @throws JSONException If the report cannot be built.
+     */
+    public synchronized JSONObject report(Context context, boolean onlyChanged) throws JSONException {
+        JSONObject report = new JSONObject();
+        report.put("enabled", NotificationManagerCompat.from(context).areNotificationsEnabled());
+        JSONArray channels = new JSONArray();
+        JSONArray groups = new JSONArray();
+        JSONArray removedChannels = new JSONArray();
+        JSONArray removedGroups = new JSONArray();
+        // Channels exist from API Level 26 on, before that there is nothing to report
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationManager notificationManager = context.getSystemService(NotificationManager.class);
+            Map<String, Integer> groupStates = new HashMap<>();
+            for (NotificationChannelGroup group : notificationManager.getNotificationChannelGroups()) {
+                // Groups can be blocked from API Level 28 on
+                boolean blocked = Build.VERSION.SDK_INT >= Build.VERSION_CODES.P && group.isBlocked();
+                int state = blocked ? BLOCKED : 0;
+                groupStates.put(group.getId(), state);
+                if (!onlyChanged || !Integer.valueOf(state).equals(mReportedGroups.get(group.getId()))) {
+                    JSONObject groupReport = new JSONObject();
+                    groupReport.put("id", group.getId());
+                    groupReport.put("name", String.valueOf(group.getName()));
+                    groupReport.put("blocked", blocked);
+                    groups.put(groupReport);
+                }
+            }
+            Map<String, Integer> channelStates = new HashMap<>();
+            List<NotificationChannel> notificationChannels = notificationManager.getNotificationChannels();
+            for (NotificationChannel channel : notificationChannels) {
+                Integer groupState = channel.getGroup() == null ? null : groupStates.get(channel.getGroup());
+                boolean blocked = channel.getImportance() == NotificationManager.IMPORTANCE_NONE
+                        || (groupState != null && (groupState & BLOCKED) != 0);
+                int state = channel.getImportance() | (blocked ? BLOCKED : 0);
+                channelStates.put(channel.getId(), state);
+                if (!onlyChanged || !Integer.valueOf(state).equals(mReportedChannels.get(channel.getId()))) {
+                    JSONObject channelReport = new JSONObject();
+                    channelReport.put("id", channel.getId());
+                    channelReport.put("name", String.valueOf(channel.getName()));
+                    channelReport.put("group", channel.getGroup() == null ? JSONObject.NULL : channel.getGroup());
+                    channelReport.put("importance", channel.getImportance());
+                    channelReport.put("blocked", blocked);
+                    channels.put(channelReport);
+                }
+            }
+            putRemoved(removedGroups, mReportedGroups, groupStates);
+            putRemoved(removedChannels, mReportedChannels, channelStates);
+            mReportedGroups.clear();
+            mReportedGroups.putAll(groupStates);
+            mReportedChannels.clear();
+            mReportedChannels.putAll(channelStates);
+        }
+        report.put("channels", channels);
+        report.put("groups", groups);
+        report.put("removedChannels", removedChannels);
+        report.put("removedGroups", removedGroups);
+        return report;
+    }
+
+    private static void putRemoved(JSONArray removed, Map<String, Integer> reported, Map<String, Integer> current) {
+        for (String id : reported.keySet()) {
+            if (!current.containsKey(id)) {
+                removed.put(id);
+            }
+        }
+    }
+}
@@ -1,7 +1,7 @@
 package nl.klaasmaakt.cordova.notifications_permission;
 
 /**
- * Callback interface for handling positive and negative actions in a dialog.
+ * Callback interface for handling positive and negative actions in a dialog, and for timing its display.
  */
 public interface ClickCallback {
 
@@ -20,4 +20,11 @@ public interface ClickCallback {
      * @param status The status of the click action (POSITIVE or NEGATIVE).
      */
     void onClick(Status status);
+
+    /**
+     * Called once when the dialog is on screen.
+     *
+     * @param displayStartNanos The time the plugin started showing the dialog, from PermissionMetrics.start().
+     */
+    void onDisplayed(long displayStartNanos);
 }
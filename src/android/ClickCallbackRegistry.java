@@ -0,0 +1,67 @@
+package nl.klaasmaakt.cordova.notifications_permission;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Routes the clicks of a PermissionsDialogFragment to its ClickCallback by an id that is kept
+ * in the fragment arguments, so a recreated fragment still finds its callback. Callbacks are
+ * only weakly referenced, so a dialog does not keep its plugin alive.
+ */
+final class ClickCallbackRegistry {
+
+    private static final Map<String, WeakReference<ClickCallback>> sCallbacks = new ConcurrentHashMap<>();
+
+    private ClickCallbackRegistry() {
+    }
+
+    /**
+     * Register a callback under an id, replacing the callback registered under that id before.
+     *
+     * @param id            The id, the same for the plugin instance that replaces this one and its dialogs.
+     * @param clickCallback The callback. The caller has to keep a reference to it.
+     */
+    static void register(String id, ClickCallback clickCallback) {
+        removeCleared();
+        sCallbacks.put(id, new WeakReference<>(clickCallback));
+    }
+
+    /**
+     * Unregister a callback, unless another one has been registered under its id since.
+     *
+     * @param id            The id the callback has been registered under.
+     * @param clickCallback The callback.
+     */
+    static void unregister(String id, ClickCallback clickCallback) {
+        WeakReference<ClickCallback> reference = sCallbacks.get(id);
+        if (reference != null && reference.get() == clickCallback) {
+            sCallbacks.remove(id, reference);
+        }
+    }
+
+    /**
+     * @param id The id the callback has been registered under.
+     * @return The callback, or null if it is not registered or has been garbage collected.
+     */
+    static ClickCallback get(String id) {
+        if (id == null) {
+            return null;
+        }
+        WeakReference<ClickCallback> reference = sCallbacks.get(id);
+        return reference == null ? null : reference.get();
+    }
+
+    /**
+     * Remove the entries of callbacks that have been garbage collected.
+     */
+    private static void removeCleared() {
+        Iterator<WeakReference<ClickCallback>> iterator = sCallbacks.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().get() == null) {
+                iterator.remove();
+            }
+        }
+    }
+}
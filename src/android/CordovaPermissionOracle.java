@@ -0,0 +1,32 @@
+package nl.klaasmaakt.cordova.notifications_permission;
+
+import androidx.core.app.ActivityCompat;
+import org.apache.cordova.CordovaInterface;
+import org.apache.cordova.CordovaPlugin;
+
+/**
+ * PermissionOracle that asks Cordova and the current Activity.
+ */
+public class CordovaPermissionOracle implements PermissionOracle {
+
+    private final CordovaInterface cordova;
+
+    public CordovaPermissionOracle(CordovaInterface cordova) {
+        this.cordova = cordova;
+    }
+
+    @Override
+    public boolean hasPermission(String permission) {
+        return cordova.hasPermission(permission);
+    }
+
+    @Override
+    public boolean shouldShowRationale(String permission) {
+        return ActivityCompat.shouldShowRequestPermissionRationale(cordova.getActivity(), permission);
+    }
+
+    @Override
+    public void requestPermissions(CordovaPlugin plugin, int requestCode, String[] permissions) {
+        cordova.requestPermissions(plugin, requestCode, permissions);
+    }
+}
@@ -0,0 +1,121 @@
+package nl.klaasmaakt.cordova.notifications_permission;
+
+import android.os.Bundle;
+import androidx.annotation.StyleRes;
+import java.util.Objects;
+
+/**
+ * The settings of the rationale or last resort dialog. Immutable, so the fragment
+ * arguments can be prepared once and reused for every dialog with the same content.
+ */
+public final class DialogConfig {
+
+    private final boolean mShow;
+    private final String mTitle;
+    private final String mMsg;
+    private final String mPositiveButton;
+    private final String mNegativeButton;
+    private final int mTheme;
+    // Channel to open in system settings from the last resort dialog, null for the notification settings of the app
+    private final String mSettingsChannelId;
+    // Arguments for PermissionsDialogFragment, built on first use for the last callback id
+    private Bundle mArguments;
+    private String mArgumentsCallbackId;
+
+    /**
+     * @param show           Whether to show the dialog at all.
+     * @param title          Title of the dialog.
+     * @param msg            The message to be displayed in the dialog.
+     * @param positiveButton The text for the positive button.
+     * @param negativeButton The text for the negative button.
+     * @param theme          The theme resource ID for the dialog.
+     */
+    public DialogConfig(boolean show, String title, String msg, String positiveButton, String negativeButton, @StyleRes int theme) {
+        this(show, title, msg, positiveButton, negativeButton, theme, null);
+    }
+
+    /**
+     * @param show              Whether to show the dialog at all.
+     * @param title             Title of the dialog.
+     * @param msg               The message to be displayed in the dialog.
+     * @param positiveButton    The text for the positive button.
+     * @param negativeButton    The text for the negative button.
+     * @param theme             The theme resource ID for the dialog.
+     * @param settingsChannelId The notification channel the last resort dialog opens in system settings, or null.
+     */
+    public DialogConfig(boolean show, String title, String msg, String positiveButton, String negativeButton, @StyleRes int theme, String settingsChannelId) {
+        mShow = show;
+        mTitle = title;
+        mMsg = msg;
+        mPositiveButton = positiveButton;
+        mNegativeButton = negativeButton;
+        mTheme = theme;
+        mSettingsChannelId = settingsChannelId;
+    }
+
+    public boolean shouldShow() {
+        return mShow;
+    }
+
+    /**
+     * @return The notification channel to open in system settings, or null for the notification settings of the app.
+     */
+    public String settingsChannelId() {
+        return mSettingsChannelId;
+    }
+
+    /**
+     * @param callbackId The id the ClickCallback is registered under in ClickCallbackRegistry.
+     * @return The arguments for PermissionsDialogFragment. Do not modify them, they are shared.
+     */
+    public synchronized Bundle arguments(String callbackId) {
+        Bundle arguments = mArguments;
+        if (arguments == null || !callbackId.equals(mArgumentsCallbackId)) {
+            arguments = PermissionsDialogFragment.newArguments(mTitle, mMsg, mPositiveButton, mNegativeButton, mTheme, callbackId);
+            mArguments = arguments;
+            mArgumentsCallbackId = callbackId;
+        }
+        return arguments;
+    }
+
+    /**
+     * Build the arguments now, so showing the dialog later on does not have to.
+     *
+     * @param callbackId The id the ClickCallback is registered under in ClickCallbackRegistry.
+     * @return This config.
+     */
+    public DialogConfig prewarm(String callbackId) {
+        arguments(callbackId);
+        return this;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof DialogConfig)) {
+            return false;
+        }
+        DialogConfig other = (DialogConfig) o;
+        return mShow == other.mShow
+                && mTheme == other.mTheme
+                && mTitle.equals(other.mTitle)
+                && mMsg.equals(other.mMsg)
+                && mPositiveButton.equals(other.mPositiveButton)
+                && mNegativeButton.equals(other.mNegativeButton)
+                && Objects.equals(mSettingsChannelId, other.mSettingsChannelId);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = mShow ? 1 : 0;
+        result = 31 * result + mTitle.hashCode();
+        result = 31 * result + mMsg.hashCode();
+        result = 31 * result + mPositiveButton.hashCode();
+        result = 31 * result + mNegativeButton.hashCode();
+        result = 31 * result + mTheme;
+        result = 31 * result + Objects.hashCode(mSettingsChannelId);
+        return result;
+    }
+}
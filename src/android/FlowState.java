@@ -0,0 +1,166 @@
+package nl.klaasmaakt.cordova.notifications_permission;
+
+/**
+ * The state of the permission flow in flight. Immutable: every transition returns a new
+ * state, so the flow can be moved on with one compare-and-set of an AtomicReference and
+ * an event that arrives late or twice (e.g. a double click) finds the flow moved on and
+ * is ignored. Transitions that are not allowed throw an IllegalStateException.
+ */
+public final class FlowState {
+
+    /**
+     * The phases of a permission flow. A flow starts from IDLE or DONE.
+     */
+    public enum Phase {
+        // No flow has run since the plugin started
+        IDLE,
+        // The dialog settings are being read and the permission checked
+        STARTING,
+        RATIONALE_SHOWN,
+        OS_PROMPT,
+        LAST_RESORT_SHOWN,
+        // The user is in system settings
+        SETTINGS,
+        // The result has been sent
+        DONE
+    }
+
+    public static final FlowState IDLE = new FlowState(0, Phase.IDLE, null, null, false, false);
+
+    // Tells the flows apart, so a timer of an earlier flow cannot end a later one
+    private final long mId;
+    private final Phase mPhase;
+    private final DialogConfig mRationale;
+    private final DialogConfig mLastResort;
+    private final boolean mHasPassedRationale;
+    private final boolean mBeforeClickPermissionRat;
+
+    private FlowState(long id, Phase phase, DialogConfig rationale, DialogConfig lastResort, boolean hasPassedRationale, boolean beforeClickPermissionRat) {
+        mId = id;
+        mPhase = phase;
+        mRationale = rationale;
+        mLastResort = lastResort;
+        mHasPassedRationale = hasPassedRationale;
+        mBeforeClickPermissionRat = beforeClickPermissionRat;
+    }
+
+    /**
+     * @param id The id of the flow, unique for the plugin instance.
+     * @return The state of a new flow, of which the dialogs are not known yet.
+     */
+    public static FlowState start(long id) {
+        return new FlowState(id, Phase.STARTING, null, null, false, false);
+    }
+
+    /**
+     * @param hasPassedRationale       Whether the rationale dialog had been confirmed.
+     * @param beforeClickPermissionRat Whether the rationale should have been shown before the request.
+     * @return The state of a flow restored while the user is in system settings, after the process was killed.
+     */
+    public static FlowState inSettings(boolean hasPassedRationale, boolean beforeClickPermissionRat) {
+        return new FlowState(0, Phase.SETTINGS, null, null, hasPassedRationale, beforeClickPermissionRat);
+    }
+
+    /**
+     * @return The id of the flow, 0 for a restored flow.
+     */
+    public long id() {
+        return mId;
+    }
+
+    public Phase phase() {
+        return mPhase;
+    }
+
+    /**
+     * @return Whether a flow is in flight, i.e. has started and not ended.
+     */
+    public boolean isActive() {
+        return mPhase != Phase.IDLE && mPhase != Phase.DONE;
+    }
+
+    public DialogConfig rationale() {
+        return mRationale;
+    }
+
+    public DialogConfig lastResort() {
+        return mLastResort;
+    }
+
+    /**
+     * @return Whether the rationale dialog has been confirmed before the OS prompt.
+     */
+    public boolean hasPassedRationale() {
+        return mHasPassedRationale;
+    }
+
+    /**
+     * @return Whether the rationale should be shown right before the OS prompt, to tell permanently from temporarily denied.
+     */
+    public boolean beforeClickPermissionRat() {
+        return mBeforeClickPermissionRat;
+    }
+
+    /**
+     * @param phase The phase to move to.
+     * @return The state in that phase, with everything else unchanged.
+     */
+    public FlowState to(Phase phase) {
+        if (!canMove(mPhase, phase)) {
+            throw new IllegalStateException("Cannot move the flow from " + mPhase + " to " + phase);
+        }
+        return new FlowState(mId, phase, mRationale, mLastResort, mHasPassedRationale, mBeforeClickPermissionRat);
+    }
+
+    /**
+     * @param rationale  The settings of the rationale dialog.
+     * @param lastResort The settings of the last resort dialog.
+     * @return The state with the dialogs of the flow, in the same phase.
+     */
+    public FlowState withDialogs(DialogConfig rationale, DialogConfig lastResort) {
+        return new FlowState(mId, mPhase, rationale, lastResort, mHasPassedRationale, mBeforeClickPermissionRat);
+    }
+
+    /**
+     * @param beforeClickPermissionRat Whether the rationale should be shown right before the request.
+     * @param hasPassedRationale       Whether the rationale dialog has been confirmed.
+     * @return The state when the OS is asked for the permission.
+     */
+    public FlowState toOsPrompt(boolean beforeClickPermissionRat, boolean hasPassedRationale) {
+        if (!canMove(mPhase, Phase.OS_PROMPT)) {
+            throw new IllegalStateException("Cannot move the flow from " + mPhase + " to " + Phase.OS_PROMPT);
+        }
+        return new FlowState(mId, Phase.OS_PROMPT, mRationale, mLastResort, hasPassedRationale, beforeClickPermissionRat);
+    }
+
+    /**
+     * @param beforeClickPermissionRat Whether the rationale should be shown right before the request.
+     * @return The state with that rationale state, in the same phase: for a request that has been held off.
+     */
+    public FlowState withBeforeClickPermissionRat(boolean beforeClickPermissionRat) {
+        return new FlowState(mId, mPhase, mRationale, mLastResort, mHasPassedRationale, beforeClickPermissionRat);
+    }
+
+    /**
+     * @return Whether the flow may move from one phase to the other.
+     */
+    static boolean canMove(Phase from, Phase to) {
+        switch (from) {
+            case IDLE:
+            case DONE:
+                return to == Phase.STARTING;
+            case STARTING:
+                return to == Phase.RATIONALE_SHOWN || to == Phase.OS_PROMPT || to == Phase.DONE;
+            case RATIONALE_SHOWN:
+                return to == Phase.OS_PROMPT || to == Phase.DONE;
+            case OS_PROMPT:
+                return to == Phase.LAST_RESORT_SHOWN || to == Phase.DONE;
+            case LAST_RESORT_SHOWN:
+                return to == Phase.SETTINGS || to == Phase.DONE;
+            case SETTINGS:
+                return to == Phase.DONE;
+            default:
+                return false;
+        }
+    }
+}
@@ -21,12 +21,15 @@ import android.Manifest;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.provider.Settings;
 import android.util.Log;
+import android.view.View;
 import androidx.annotation.NonNull;
-import androidx.annotation.StyleRes;
+import androidx.annotation.VisibleForTesting;
 import androidx.appcompat.app.AppCompatActivity;
-import androidx.core.app.ActivityCompat;
 import androidx.fragment.app.Fragment;
 import androidx.fragment.app.DialogFragment;
 import androidx.fragment.app.FragmentTransaction;
@@ -35,6 +38,22 @@ import org.apache.cordova.CordovaPlugin;
 import org.apache.cordova.PluginResult;
 import org.json.JSONArray;
 import org.json.JSONException;
+import org.json.JSONObject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 /**
  * CordovaPlugin for handling notification permissions.
  */
@@ -43,73 +62,204 @@ public class NotificationsPermission extends CordovaPlugin {
 	private static final String TAG = "NotificationsPermission";
 	// The permission we need
 	private static final String PERMISSION = Manifest.permission.POST_NOTIFICATIONS;
-	// Constants for permission status
-	public static final String GRANTED_NEWLY_AFTER_RATIONALE = "granted_newly_after_rationale";
-	public static final String GRANTED_NEWLY_WITHOUT_RATIONALE = "granted_newly_without_rationale";
-	public static final String GRANTED_NEWLY_AFTER_SETTINGS = "granted_newly_after_settings";
-	public static final String GRANTED_ALREADY = "granted_already";
-	public static final String DENIED_PERMANENTLY_ALREADY = "denied_permanently_already";
-	public static final String DENIED_PERMANENTLY_NEWLY = "denied_permanently_newly";
-	public static final String DENIED_NOT_PERMANENTLY_ALREADY = "denied_not_permanently_already";
-	public static final String DENIED_NOT_PERMANENTLY_NEWLY = "denied_not_permanently_newly";
-	public static final String DENIED_PERMANENTLY_ALREADY_AFTER_SETTINGS = "denied_permanently_already_after_settings";
-	public static final String DENIED_THROUGH_RATIONALE_DIALOG = "denied_through_rationale_dialog";
-	public static final String DENIED_THROUGH_LAST_RESORT_DIALOG = "denied_through_last_resort_dialog";
-	public static final String NOT_NEEDED = "not_needed";
+	// Maps the status codes of PermissionDecisionEngine onto the statuses returned to JavaScript
+	private static final PermissionStatus[] DECISION_STATUSES = new PermissionStatus[]{
+		PermissionStatus.GRANTED_NEWLY_AFTER_RATIONALE,
+		PermissionStatus.GRANTED_NEWLY_WITHOUT_RATIONALE,
+		PermissionStatus.DENIED_PERMANENTLY_ALREADY,
+		PermissionStatus.DENIED_PERMANENTLY_NEWLY,
+		PermissionStatus.DENIED_NOT_PERMANENTLY_ALREADY,
+		PermissionStatus.DENIED_NOT_PERMANENTLY_NEWLY
+	};
+	// Actions that can be called from JavaScript
+	private static final String ACTION_MAYBE_ASK_PERMISSION = "maybeAskPermission";
+	private static final String ACTION_CHECK_STATUS = "checkStatus";
+	private static final String ACTION_MAYBE_ASK_PERMISSIONS = "maybeAskPermissions";
+	private static final String ACTION_WATCH_PERMISSION = "watchPermission";
+	private static final String ACTION_UNWATCH_PERMISSION = "unwatchPermission";
+	private static final String ACTION_GET_METRICS = "getMetrics";
+	private static final String ACTION_PREWARM_DIALOGS = "prewarmDialogs";
+	private static final String ACTION_CONFIGURE = "configure";
+	private static final String ACTION_CONFIGURE_BACKOFF = "configureBackoff";
+	private static final String ACTION_DRAIN_ANALYTICS = "drainAnalytics";
+	private static final String ACTION_GET_CHANNEL_STATES = "getChannelStates";
+	private static final String ACTION_CANCEL = "cancel";
+	// Version of the argument format of configure
+	private static final int CONFIG_VERSION = 1;
+	// Indexes of the dialogs registered with configure
+	private static final int CONFIG_RATIONALE = 0;
+	private static final int CONFIG_LAST_RESORT = 1;
+	// Bits of the snapshot of the flow in flight, and the key to save it under
+	private static final int SNAPSHOT_IN_FLIGHT = 1;
+	private static final int SNAPSHOT_USER_WENT_TO_SETTINGS = 1 << 1;
+	private static final int SNAPSHOT_HAS_PASSED_RATIONALE = 1 << 2;
+	private static final int SNAPSHOT_BEFORE_CLICK_PERMISSION_RAT = 1 << 3;
+	private static final String STATE_FLOW_SNAPSHOT = "flow_snapshot";
+	// Resumes within this time are handled as one, when checking for changes of the permission
+	private static final long WATCH_DEBOUNCE_MS = 300;
 	// Request code for permission request
 	private static final int REQUEST_CODE_PERMISSION = 1;
+	private static final int REQUEST_CODE_PERMISSIONS = 2;
 	private static final int REQUEST_CODE_OPEN_SETTINGS = 1;
-	// Stores the before state of shouldRequestPermissionRationale to differentiate between permanently and temporarily denied.
-	private boolean mShowDialog;
-	private String mTitle;
-	private String mMsg;
-	private String mPositiveButton;
-	private String mNegativeButton;
-	private Integer mTheme;
-	private boolean mUserWentToSettings = false;
-	private boolean beforeClickPermissionRat;
+	// Pre-warm mode: dialog arguments and the dialogs themselves are prepared up front and reused while their content is unchanged
+	private volatile boolean mPrewarm = false;
+	private volatile DialogConfig mPrewarmedRationale;
+	private volatile DialogConfig mPrewarmedLastResort;
+	// Holds back asking again after the user denied, see configureBackoff
+	private volatile PromptScheduler mPromptScheduler = PromptScheduler.DISABLED;
+	// Dialogs registered with configure, by id
+	private final Map<String, DialogConfig[]> mConfigs = new ConcurrentHashMap<>();
+	// The permission flow in flight, moved on with compare-and-set so late or double events are ignored
+	private final AtomicReference<FlowState> mFlow = new AtomicReference<>(FlowState.IDLE);
+	// Ids of the flows and the batches, one sequence so a result of the OS matches only the request that asked
+	private final AtomicLong mFlowIds = new AtomicLong();
+	// Runs the deadlines of all flows, created on first use and shut down in onDestroy
+	private ScheduledExecutorService mScheduler;
+	// The deadline of the flow in flight, if it has one
+	private volatile ScheduledFuture<?> mDeadline;
 	// Dialog ID for managing multiple dialogs
 	private static final String DIALOG_ID = "dialog";
-	// Callback context for communicating with Cordova
-	private CallbackContext mCallbackContext;
+	// Lets one request at a time through to the OS, and tells which flow a result belongs to
+	private final PermissionRequestGate mRequestGate = new PermissionRequestGate();
+	// Callback contexts for communicating with Cordova, one permission flow at a time
+	private final PermissionRequestCoalescer mCoalescer = new PermissionRequestCoalescer();
 	// Instance of NotificationsPermission for referencing in callbacks
 	private NotificationsPermission mInstance;
-	private Utils mUtils;
-	// Keeps track of whether the rationale has shown before making new requestPermission
-	private boolean hasPassedRationale = false;
+	// Loads the state of POST_NOTIFICATIONS once, in the background, see stateStore()
+	private FutureTask<PermissionStateStore> mStateStoreLoader;
+	// Answers and asks for permissions, the OS unless replaced to drive the flows without a device
+	private PermissionOracle mPermissionOracle;
+	// State of the other permissions that are asked in a batch, by permission
+	private final Map<String, PermissionStateStore> mStateStores = new ConcurrentHashMap<>();
+	// Callback contexts of the batches in flight, by permission set: only calls for the same permissions are joined
+	private final Map<String, PermissionRequestCoalescer> mBatchCoalescers = new ConcurrentHashMap<>();
+	// Batches that have been submitted to the OS and wait for their result, by request id
+	private final Map<Long, Batch> mBatches = new ConcurrentHashMap<>();
+	// Callback contexts that are kept open to push changes of the permission
+	private final List<CallbackContext> mWatchers = new CopyOnWriteArrayList<>();
+	// Whether notifications could be shown when last pushed to the watchers
+	private volatile boolean mWatchedAllowed;
+	// Runs the checks for the watchers on the main thread, created in pluginInitialize unless replaced
+	private Handler mMainHandler;
+	// Creates the storage of each permission, SharedPreferences through Utils unless replaced
+	private PermissionStateStorage.Factory mStorageFactory;
+	// Latencies of the phases of a permission flow and the number of times each status has been sent
+	private final PermissionMetrics mMetrics = new PermissionMetrics();
+	// Funnel counters kept on the device until drained, written to storage in batches
+	private final PermissionAnalytics mAnalytics = new PermissionAnalytics();
+	// Storage of POST_NOTIFICATIONS and the analytics, see storage()
+	private PermissionStateStorage mStorage;
+	// Remembers the reported channel states, to report only the changes when asked
+	private final ChannelStateReporter mChannelStateReporter = new ChannelStateReporter();
+	// Start times of the OS prompt and the round trip to system settings
+	private volatile long mOsPromptStart;
+	private volatile long mSettingsStart;
 	// ClickCallback for handling positive and negative button clicks
 	private ClickCallback mClickCallbackRationale = new ClickCallback() {
 		@Override
 		public void onClick(Status status) {
 			if (status == ClickCallback.Status.POSITIVE) {
-				beforeClickPermissionRat = mInstance.shouldShowRationale();
-				hasPassedRationale = true;
-				cordova.requestPermission(mInstance, REQUEST_CODE_PERMISSION, PERMISSION);
+				FlowState flow = flowIn(FlowState.Phase.RATIONALE_SHOWN);
+				// Save the status now in order to determine at return whether request is permanently denied.
+				if(flow != null && moveFlow(flow, flow.toOsPrompt(mInstance.shouldShowRationale(), true))){
+					requestPermission(flow.id());
+				}
 			}
 			if (status == ClickCallback.Status.NEGATIVE) {
-				PluginResult.Status resultStatus = PluginResult.Status.OK;
-				String permissionStatus = mInstance.DENIED_THROUGH_RATIONALE_DIALOG;
-				Log.v(TAG, permissionStatus);
-				mCallbackContext.sendPluginResult(new PluginResult(resultStatus, permissionStatus));
+				sendResult(FlowState.Phase.RATIONALE_SHOWN, PermissionStatus.DENIED_THROUGH_RATIONALE_DIALOG);
 			}
 		}
+
+		@Override
+		public void onDisplayed(long displayStartNanos) {
+			mMetrics.record(PermissionMetrics.PHASE_DIALOG_DISPLAY, displayStartNanos);
+		}
 	};
+	// Plugin instances created per activity for WebViews without a view id, see webViewId()
+	private static final Map<AppCompatActivity, Integer> sInstancesWithoutViewId = new WeakHashMap<>();
+	private String mWebViewId;
+	// Ids the ClickCallbacks are registered under in ClickCallbackRegistry, see callbackId()
+	private String mRationaleCallbackId;
+	private String mLastResortCallbackId;
 	private ClickCallback mCLickCallbackLastResort = new ClickCallback() {
 		@Override
 		public void onClick(Status status) {
 			if (status == ClickCallback.Status.POSITIVE) {
-				mUserWentToSettings = true;
-				cordova.getActivity().startActivityForResult(new Intent(Settings.ACTION_ALL_APPS_NOTIFICATION_SETTINGS), REQUEST_CODE_OPEN_SETTINGS);
+				FlowState flow = flowIn(FlowState.Phase.LAST_RESORT_SHOWN);
+				if(flow == null){
+					return;
+				}
+				FlowState settings = flow.to(FlowState.Phase.SETTINGS);
+				if(!moveFlow(flow, settings)){
+					return;
+				}
+				mSettingsStart = PermissionMetrics.start();
+				saveFlowSnapshot(settings);
+				cordova.startActivityForResult(mInstance, settingsIntent(flow.lastResort()), REQUEST_CODE_OPEN_SETTINGS);
 			}
 			if (status == ClickCallback.Status.NEGATIVE) {
-				PluginResult.Status resultStatus = PluginResult.Status.OK;
-				String permissionStatus = mInstance.DENIED_THROUGH_LAST_RESORT_DIALOG;
-				Log.v(TAG, permissionStatus);
-				mCallbackContext.sendPluginResult(new PluginResult(resultStatus, permissionStatus));
+				sendResult(FlowState.Phase.LAST_RESORT_SHOWN, PermissionStatus.DENIED_THROUGH_LAST_RESORT_DIALOG);
 			}
 		}
+
+		@Override
+		public void onDisplayed(long displayStartNanos) {
+			mMetrics.record(PermissionMetrics.PHASE_DIALOG_DISPLAY, displayStartNanos);
+		}
 	};
 
+	/**
+	 * A batch of permissions asked in one system request.
+	 */
+	private static final class Batch {
+		final PermissionRequestCoalescer coalescer;
+		final String[] permissions;
+		// Already holds the permissions that did not need to be requested
+		final JSONObject results;
+		// Read right before the request is issued, to determine at return whether a permission is permanently denied
+		volatile boolean[] beforeClickPermissionRat;
+
+		Batch(PermissionRequestCoalescer coalescer, String[] permissions, JSONObject results) {
+			this.coalescer = coalescer;
+			this.permissions = permissions;
+			this.results = results;
+		}
+	}
+
+	/**
+	 * The id a dialog finds its ClickCallback by. A dialog that Android recreates from its saved
+	 * arguments, after the activity or the process has been recreated, belongs to a new plugin
+	 * instance: so the id is derived from what stays the same, the service name and the WebView,
+	 * see webViewId(), and the new instance registers under it again.
+	 *
+	 * @param dialog The kind of dialog.
+	 * @return The id of the ClickCallback.
+	 */
+	private String callbackId(String dialog) {
+		return getServiceName() + ":" + mWebViewId + ":" + dialog;
+	}
+
+	/**
+	 * Tells apart the WebViews of one activity: by the id of their view, and if they have none by the
+	 * order in which their plugin instances are created, which is the same again after recreation.
+	 *
+	 * @return The part of the ids of the ClickCallbacks that belongs to this instance.
+	 */
+	private String webViewId() {
+		View view = webView == null ? null : webView.getView();
+		int viewId = view == null ? View.NO_ID : view.getId();
+		if(viewId != View.NO_ID){
+			return String.valueOf(viewId);
+		}
+		AppCompatActivity activity = cordova.getActivity();
+		synchronized(sInstancesWithoutViewId){
+			Integer created = sInstancesWithoutViewId.get(activity);
+			int ordinal = created == null ? 0 : created;
+			sInstancesWithoutViewId.put(activity, ordinal + 1);
+			return View.NO_ID + "#" + ordinal;
+		}
+	}
+
 	/**
 	 * Initialize the plugin.
 	 */
@@ -117,7 +267,235 @@ public class NotificationsPermission extends CordovaPlugin {
 	public void pluginInitialize() {
 		super.pluginInitialize();
 		mInstance = this;
-		mUtils = new Utils(cordova.getContext());
+		if(mPermissionOracle == null){
+			mPermissionOracle = new CordovaPermissionOracle(cordova);
+		}
+		if(mMainHandler == null){
+			mMainHandler = new Handler(Looper.getMainLooper());
+		}
+		if(mStorageFactory == null){
+			mStorageFactory = permission -> new Utils(cordova.getContext(), permission);
+		}
+		mWebViewId = webViewId();
+		mRationaleCallbackId = callbackId("rationale");
+		mLastResortCallbackId = callbackId("last_resort");
+		ClickCallbackRegistry.register(mRationaleCallbackId, mClickCallbackRationale);
+		ClickCallbackRegistry.register(mLastResortCallbackId, mCLickCallbackLastResort);
+		mStateStoreLoader = new FutureTask<>(() -> {
+			// The flow that was in flight when the process was killed is only picked up by onRestoreStateForActivityResult:
+			// after a cold start nobody waits for its result anymore, and no resume would come to deliver it
+			return new PermissionStateStore(storage());
+		});
+		if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU){
+			// Load the state in the background, it will most likely be needed. Before API Level 33 it is only loaded when asked for.
+			cordova.getThreadPool().execute(mStateStoreLoader);
+		}
+	}
+
+	/**
+	 * Run work that needs the state of POST_NOTIFICATIONS: right away if it has been loaded or
+	 * is not needed before API Level 33, else on the thread pool once it has been loaded. The
+	 * calling thread, e.g. the UI thread, neither waits for the loader nor runs it.
+	 *
+	 * @param work The work.
+	 */
+	private void whenStateLoaded(Runnable work) {
+		if(Build.VERSION.SDK_INT < Build.VERSION_CODES.TIRAMISU || mStateStoreLoader.isDone()){
+			work.run();
+			return;
+		}
+		cordova.getThreadPool().execute(() -> {
+			stateStore();
+			work.run();
+		});
+	}
+
+	/**
+	 * @return The state of POST_NOTIFICATIONS, waiting for it to be loaded if needed.
+	 */
+	private PermissionStateStore stateStore() {
+		// Runs the loader on this thread if it has not been started, else does nothing
+		mStateStoreLoader.run();
+		try {
+			return mStateStoreLoader.get();
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Could not load the permission state", e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while loading the permission state", e);
+		}
+	}
+
+	/**
+	 * Save the flow in flight, so it can be restored when Android kills the process while the user
+	 * is in system settings. Only the result of that round trip is restored, to deliver it on resume.
+	 *
+	 * @return Bundle with the snapshot of the flow in flight, or null if there is none.
+	 */
+	@Override
+	public Bundle onSaveInstanceState() {
+		FlowState flow = mFlow.get();
+		if(flow.phase() != FlowState.Phase.SETTINGS){
+			return null;
+		}
+		Bundle state = new Bundle();
+		state.putInt(STATE_FLOW_SNAPSHOT, packFlowSnapshot(flow));
+		return state;
+	}
+
+	/**
+	 * Called when the activity has been recreated after the process was killed while the user was in system settings.
+	 *
+	 * @param state           The Bundle returned by onSaveInstanceState.
+	 * @param callbackContext Delivers the result through the pendingResult of the resume event.
+	 */
+	@Override
+	public void onRestoreStateForActivityResult(Bundle state, CallbackContext callbackContext) {
+		if(state.containsKey(STATE_FLOW_SNAPSHOT)){
+			restoreFlowSnapshot(state.getInt(STATE_FLOW_SNAPSHOT));
+			joinRestoredFlow(callbackContext);
+		} else {
+			// Not in the saved state, the snapshot in storage is the one to pick up
+			whenStateLoaded(() -> {
+				restoreFlowSnapshot(stateStore().getFlowSnapshot());
+				joinRestoredFlow(callbackContext);
+			});
+		}
+	}
+
+	/**
+	 * @param callbackContext Gets the result of the restored flow, if it has been restored in system settings.
+	 */
+	private void joinRestoredFlow(CallbackContext callbackContext) {
+		if(mFlow.get().phase() == FlowState.Phase.SETTINGS){
+			mCoalescer.join(callbackContext);
+		}
+	}
+
+	/**
+	 * @param flow The state of the flow in flight.
+	 * @return The state packed into one int.
+	 */
+	private static int packFlowSnapshot(FlowState flow) {
+		int snapshot = SNAPSHOT_IN_FLIGHT;
+		if(flow.phase() == FlowState.Phase.SETTINGS){
+			snapshot |= SNAPSHOT_USER_WENT_TO_SETTINGS;
+		}
+		if(flow.hasPassedRationale()){
+			snapshot |= SNAPSHOT_HAS_PASSED_RATIONALE;
+		}
+		if(flow.beforeClickPermissionRat()){
+			snapshot |= SNAPSHOT_BEFORE_CLICK_PERMISSION_RAT;
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Save the state of the flow in flight with one atomic write.
+	 *
+	 * @param flow The state of the flow in flight.
+	 */
+	private void saveFlowSnapshot(FlowState flow) {
+		stateStore().saveFlowSnapshot(packFlowSnapshot(flow));
+	}
+
+	/**
+	 * @param snapshot The state of the flow in flight packed into one int, 0 if none.
+	 */
+	private void restoreFlowSnapshot(int snapshot) {
+		// Only the round trip to system settings can be picked up after the process was killed
+		if((snapshot & SNAPSHOT_IN_FLIGHT) == 0 || (snapshot & SNAPSHOT_USER_WENT_TO_SETTINGS) == 0){
+			return;
+		}
+		FlowState restored = FlowState.inSettings(
+				(snapshot & SNAPSHOT_HAS_PASSED_RATIONALE) != 0,
+				(snapshot & SNAPSHOT_BEFORE_CLICK_PERMISSION_RAT) != 0);
+		// Does not replace a flow that has started in the meantime, or the same flow restored already
+		mFlow.compareAndSet(FlowState.IDLE, restored);
+	}
+
+	/**
+	 * @param phase The phase the event is expected in.
+	 * @return The state of the flow if it is in that phase, else null: the event is late or a duplicate and is ignored.
+	 */
+	private FlowState flowIn(FlowState.Phase phase) {
+		FlowState flow = mFlow.get();
+		if(flow.phase() != phase){
+			Log.w(TAG, "ignoring an event for " + phase + ", the flow is " + flow.phase());
+			return null;
+		}
+		return flow;
+	}
+
+	/**
+	 * Move the flow on in one atomic step, if it has not changed since it was read.
+	 *
+	 * @param from The state the next state has been derived from.
+	 * @param to   The next state.
+	 * @return Whether the flow has moved on, false if another event came first.
+	 */
+	private boolean moveFlow(FlowState from, FlowState to) {
+		if(!mFlow.compareAndSet(from, to)){
+			Log.w(TAG, "ignoring " + from.phase() + " -> " + to.phase() + ", the flow is " + mFlow.get().phase());
+			return false;
+		}
+		if(from.phase() != to.phase() && mAnalytics.countPhase(to.phase())){
+			persistAnalytics();
+		}
+		return true;
+	}
+
+	/**
+	 * Write the analytics counted since the last time to storage.
+	 */
+	private void persistAnalytics() {
+		// Called on every pause, so nothing is created or written unless something has been counted
+		if(mAnalytics.hasPending()){
+			mAnalytics.persist(storage());
+		}
+	}
+
+	/**
+	 * @return The storage of POST_NOTIFICATIONS and the analytics, created on first use.
+	 */
+	private synchronized PermissionStateStorage storage() {
+		if(mStorage == null){
+			mStorage = mStorageFactory.create(null);
+		}
+		return mStorage;
+	}
+
+	/**
+	 * Replace the OS as source of permission state, e.g. to drive the flows from a test harness.
+	 * Call before pluginInitialize.
+	 *
+	 * @param permissionOracle The oracle to use.
+	 */
+	@VisibleForTesting
+	void setPermissionOracle(PermissionOracle permissionOracle) {
+		mPermissionOracle = permissionOracle;
+	}
+
+	/**
+	 * Replace the Handler of the main thread, e.g. to run the checks for the watchers from a test harness.
+	 * Call before pluginInitialize.
+	 *
+	 * @param mainHandler The Handler to post to.
+	 */
+	@VisibleForTesting
+	void setMainHandler(Handler mainHandler) {
+		mMainHandler = mainHandler;
+	}
+
+	/**
+	 * Replace the storage of the permission state, e.g. to keep it in memory in a test harness.
+	 * Call before pluginInitialize.
+	 *
+	 * @param storageFactory Creates the storage of each permission.
+	 */
+	@VisibleForTesting
+	void setStorageFactory(PermissionStateStorage.Factory storageFactory) {
+		mStorageFactory = storageFactory;
 	}
 
 	/**
@@ -133,77 +511,158 @@ public class NotificationsPermission extends CordovaPlugin {
 		/* onRequestPermissionResult is deprecated, but the alternative onRequestPermissionsResult is not implemented yet/ */
 		super.onRequestPermissionResult(requestCode,permissions,grantResults);
 		if (requestCode == REQUEST_CODE_PERMISSION) {
-			String result = "undefined";
-			if(grantResults.length == 0){
-				result = "the result of the granted status is unknown";
+			onPermissionResult(mRequestGate.complete(), grantResults);
+			// The OS can show the next prompt now
+			mRequestGate.issueNext();
+		}
+		else if (requestCode == REQUEST_CODE_PERMISSIONS) {
+			Batch batch = mBatches.remove(mRequestGate.complete());
+			if(batch != null){
+				mMetrics.record(PermissionMetrics.PHASE_OS_PROMPT, mOsPromptStart);
+				sendBatchResult(batch, grantResults);
 			}
-			else if(grantResults[0] == PackageManager.PERMISSION_GRANTED){
-				if(hasPassedRationale == true){
-					result = GRANTED_NEWLY_AFTER_RATIONALE;
-				}
-				else {
-					result = GRANTED_NEWLY_WITHOUT_RATIONALE;
-				}
-				mUtils.savePermissionHasBeenGrantedBefore();
-			}
-			else if(grantResults[0] == PackageManager.PERMISSION_DENIED){
-				/* We need to check whether we have been in the process or the user has just started.
-				 * If the rationale dialog has been needed before we know this is not the first start
-				 */
-				boolean rationaleHasBeenNeededBefore = mUtils.getRationaleHasBeenNeededBefore();
-				/* In the rare case that the user granted permission and then ungranted it via OS settings
-				 * we will keep track of that grant.
-				 */
-				boolean permissionHasBeenGrantedBefore = mUtils.getPermissionHasBeenGrantedBefore();
-				/* Also check whether we arrive her for a second time, so we can set already denied
-				 * properly next time.
-				 */
-				boolean haveWeBeenHereBefore = mUtils.getHaveWeBeenHereBefore();
-				mUtils.saveHaveWeBeenHereBefore();
-				boolean afterClickPermissionRat = shouldShowRationale();
-				// if true than we save it so we know this is not the first time
-				if(afterClickPermissionRat == true){
-					mUtils.saveRationaleHasBeenNeededBefore();
+			mRequestGate.issueNext();
+		}
+	}
+
+	/**
+	 * Handle the result of the OS prompt for the permission. A result for a flow that has ended
+	 * early, because it timed out or has been cancelled while the prompt was showing, only updates
+	 * the stored flags: it is not sent, and not classified against a later flow.
+	 *
+	 * @param requestFlowId The id of the flow that asked.
+	 * @param grantResults  The grant results of the request.
+	 */
+	private void onPermissionResult(long requestFlowId, int[] grantResults) {
+		FlowState flow = mFlow.get();
+		if(flow.phase() != FlowState.Phase.OS_PROMPT || flow.id() != requestFlowId){
+			Log.w(TAG, "ignoring the result of the OS prompt of flow " + requestFlowId + ", which has ended");
+			if(grantResults.length > 0){
+				// The user did answer, which the next flow needs to tell a permanent denial
+				collectDecisionInput(stateStore(), PERMISSION, grantResults[0] == PackageManager.PERMISSION_GRANTED, false, false);
+				stateStore().flush();
+				NotificationsPermissionState.invalidate();
+			}
+			return;
+		}
+		mMetrics.record(PermissionMetrics.PHASE_OS_PROMPT, mOsPromptStart);
+		PermissionStatus result;
+		if(grantResults.length == 0){
+			Log.w(TAG, "the result of the granted status is unknown");
+			result = PermissionStatus.ERROR;
+		}
+		else{
+			boolean granted = grantResults[0] == PackageManager.PERMISSION_GRANTED;
+			int input = collectDecisionInput(stateStore(), PERMISSION, granted, flow.beforeClickPermissionRat(), flow.hasPassedRationale());
+			int outcome = PermissionDecisionEngine.decide(input);
+			if(PermissionDecisionEngine.showLastResort(outcome)){
+				stateStore().saveLastResortHasShown();
+				DialogConfig lastResort = flow.lastResort();
+				if(lastResort != null && lastResort.shouldShow() && moveFlow(flow, flow.to(FlowState.Phase.LAST_RESORT_SHOWN))){
+					/* The last resort dialog ends the flow and sends the result. */
+					showExtraDialog(true);
+					stateStore().flush();
+					return;
 				}
-				/* Since we know te state of shouldShowRationale before and after we requestPermission
-				 * we know that there is still no need to show the rationale so was already denied
-				 * or the whole process hasn't started yet since the first dialog has never finished.
-				 */
-				if(beforeClickPermissionRat == false && afterClickPermissionRat == false){
-					/* We have had the first dialog a while ago, so this is the end */
-					if(rationaleHasBeenNeededBefore == true || permissionHasBeenGrantedBefore == true){
-						if(!mUtils.getLastResortHasShown()) {
-							showExtraDialog(true);
-							mUtils.saveLastResortHasShown();
-						}
-						result = DENIED_PERMANENTLY_ALREADY;
-					}
-					else if(haveWeBeenHereBefore == true){
-						result = DENIED_NOT_PERMANENTLY_ALREADY;
-					}
-					else{
-						result = DENIED_NOT_PERMANENTLY_NEWLY;
+			}
+			result = DECISION_STATUSES[PermissionDecisionEngine.status(outcome)];
+		}
+		sendResult(FlowState.Phase.OS_PROMPT, result);
+	}
+
+	/**
+	 * Pack the inputs for PermissionDecisionEngine and update the stored flags of the permission.
+	 *
+	 * @param stateStore               The state of the permission.
+	 * @param permission               The permission that has been requested.
+	 * @param granted                  Whether the permission has been granted.
+	 * @param beforeClickPermissionRat Whether the rationale should be shown before the request.
+	 * @param hasPassedRationale       Whether the rationale dialog has been confirmed.
+	 * @return The IN_* bits of PermissionDecisionEngine.
+	 */
+	private int collectDecisionInput(PermissionStateStore stateStore, String permission, boolean granted, boolean beforeClickPermissionRat, boolean hasPassedRationale) {
+		int input = 0;
+		if(granted){
+			input |= PermissionDecisionEngine.IN_GRANTED;
+			stateStore.savePermissionHasBeenGrantedBefore();
+		}
+		else{
+			/* We need to check whether we have been in the process or the user has just started.
+			 * If the rationale dialog has been needed before we know this is not the first start
+			 */
+			if(stateStore.getRationaleHasBeenNeededBefore()){
+				input |= PermissionDecisionEngine.IN_RATIONALE_HAS_BEEN_NEEDED_BEFORE;
+			}
+			/* In the rare case that the user granted permission and then ungranted it via OS settings
+			 * we will keep track of that grant.
+			 */
+			if(stateStore.getPermissionHasBeenGrantedBefore()){
+				input |= PermissionDecisionEngine.IN_PERMISSION_HAS_BEEN_GRANTED_BEFORE;
+			}
+			/* Also check whether we arrive her for a second time, so we can set already denied
+			 * properly next time.
+			 */
+			if(stateStore.getHaveWeBeenHereBefore()){
+				input |= PermissionDecisionEngine.IN_HAVE_WE_BEEN_HERE_BEFORE;
+			}
+			stateStore.saveHaveWeBeenHereBefore();
+			if(stateStore.getLastResortHasShown()){
+				input |= PermissionDecisionEngine.IN_LAST_RESORT_HAS_SHOWN;
+			}
+			// if true than we save it so we know this is not the first time
+			if(shouldShowRationale(permission)){
+				input |= PermissionDecisionEngine.IN_AFTER_CLICK_RATIONALE;
+				stateStore.saveRationaleHasBeenNeededBefore();
+			}
+		}
+		if(hasPassedRationale){
+			input |= PermissionDecisionEngine.IN_HAS_PASSED_RATIONALE;
+		}
+		if(beforeClickPermissionRat){
+			input |= PermissionDecisionEngine.IN_BEFORE_CLICK_RATIONALE;
+		}
+		return input;
+	}
+
+	/**
+	 * End the batch in flight, sending the status of every permission in one response.
+	 * No dialogs are shown for a batch, so the last resort outcome is reported as is.
+	 * The status of POST_NOTIFICATIONS is recorded like the result of maybeAskPermission.
+	 *
+	 * @param batch        The batch the result belongs to.
+	 * @param grantResults The grant results for each requested permission.
+	 */
+	private void sendBatchResult(Batch batch, int[] grantResults) {
+		JSONObject results = batch.results;
+		boolean[] beforeClickPermissionRat = batch.beforeClickPermissionRat;
+		try {
+			for(int i = 0; i < batch.permissions.length; i++){
+				String permission = batch.permissions[i];
+				PermissionStatus result;
+				if(i >= grantResults.length){
+					Log.w(TAG, "the result of the granted status is unknown for " + permission);
+					result = PermissionStatus.ERROR;
+					if(PERMISSION.equals(permission)){
+						recordStatus(result);
 					}
 				}
-				else if(beforeClickPermissionRat == false && afterClickPermissionRat == true){
-					if(haveWeBeenHereBefore == true) {
-						result = DENIED_NOT_PERMANENTLY_ALREADY;
-					}
-					else{
-						result = DENIED_NOT_PERMANENTLY_NEWLY;
+				else{
+					PermissionStateStore stateStore = getStateStore(permission);
+					boolean granted = grantResults[i] == PackageManager.PERMISSION_GRANTED;
+					int input = collectDecisionInput(stateStore, permission, granted, beforeClickPermissionRat[i], false);
+					result = DECISION_STATUSES[PermissionDecisionEngine.status(PermissionDecisionEngine.decide(input))];
+					if(PERMISSION.equals(permission)){
+						recordStatus(result);
 					}
+					rememberStatus(stateStore, result);
 				}
-				else if(beforeClickPermissionRat == true && afterClickPermissionRat == false){
-					result = DENIED_PERMANENTLY_NEWLY;
-				}
-				else if(beforeClickPermissionRat == true && afterClickPermissionRat == true){
-					result = DENIED_NOT_PERMANENTLY_ALREADY;
-				}
+				results.put(permission, result.value());
 			}
-			Log.v(TAG, result);
-			PluginResult.Status status = PluginResult.Status.OK;
-			mCallbackContext.sendPluginResult(new PluginResult(status, result));
+		} catch (JSONException e) {
+			batch.coalescer.resolve(new PluginResult(PluginResult.Status.ERROR, e.toString()));
+			return;
 		}
+		batch.coalescer.resolve(new PluginResult(PluginResult.Status.OK, results));
 	}
 
 	/**
@@ -216,107 +675,725 @@ public class NotificationsPermission extends CordovaPlugin {
 	 */
 	@Override
 	public boolean execute(String action, JSONArray args, CallbackContext callbackContext) throws JSONException {
-		mCallbackContext = callbackContext;
+		if(ACTION_CHECK_STATUS.equals(action)){
+			checkStatus(callbackContext);
+			return true;
+		}
+		if(ACTION_CONFIGURE.equals(action)){
+			configure(args, callbackContext);
+			return true;
+		}
+		if(ACTION_CONFIGURE_BACKOFF.equals(action)){
+			mPromptScheduler = PromptScheduler.fromJson(args.getJSONObject(0));
+			callbackContext.success();
+			return true;
+		}
+		if(ACTION_PREWARM_DIALOGS.equals(action)){
+			prewarmDialogs(args);
+			callbackContext.success();
+			return true;
+		}
+		if(ACTION_CANCEL.equals(action)){
+			endFlowEarly(0, PermissionStatus.CANCELLED);
+			callbackContext.success();
+			return true;
+		}
+		if(ACTION_GET_CHANNEL_STATES.equals(action)){
+			boolean onlyChanged = args.optBoolean(0, false);
+			cordova.getThreadPool().execute(() -> {
+				try {
+					callbackContext.success(mChannelStateReporter.report(cordova.getContext(), onlyChanged));
+				} catch (JSONException e) {
+					callbackContext.error(e.toString());
+				}
+			});
+			return true;
+		}
+		if(ACTION_DRAIN_ANALYTICS.equals(action)){
+			callbackContext.success(mAnalytics.drain(storage()));
+			return true;
+		}
+		if(ACTION_GET_METRICS.equals(action)){
+			callbackContext.success(mMetrics.snapshot());
+			return true;
+		}
+		if(ACTION_WATCH_PERMISSION.equals(action)){
+			watchPermission(callbackContext);
+			return true;
+		}
+		if(ACTION_UNWATCH_PERMISSION.equals(action)){
+			stopWatchers();
+			callbackContext.success();
+			return true;
+		}
+		if(ACTION_MAYBE_ASK_PERMISSIONS.equals(action)){
+			maybeAskPermissions(args.getJSONArray(0), callbackContext);
+			return true;
+		}
+		if(!ACTION_MAYBE_ASK_PERMISSION.equals(action)){
+			return false;
+		}
 		if(Build.VERSION.SDK_INT < Build.VERSION_CODES.TIRAMISU){
-			PluginResult.Status status = PluginResult.Status.OK;
-			String statusResult = NOT_NEEDED;
-			Log.v(TAG, statusResult);
-			mCallbackContext.sendPluginResult(new PluginResult(status, statusResult));
- 			return true;
+			Log.v(TAG, PermissionStatus.NOT_NEEDED.value());
+			mMetrics.count(PermissionStatus.NOT_NEEDED);
+			// Not counted in the analytics: there is no funnel to measure, and persisting it would open the storage
+			callbackContext.sendPluginResult(PermissionStatus.NOT_NEEDED.result());
+			return true;
+		}
+		if(!mCoalescer.join(callbackContext)){
+			// A permission flow is in flight already, this caller will get its result.
+			return true;
 		}
+		// A new flow starts, so the rationale has not been passed yet. The coalescer makes it the only one,
+		// but a flow restored after the process was killed has no caller yet: this one gets its result.
+		long flowId = mFlowIds.incrementAndGet();
+		FlowState current;
+		do {
+			current = mFlow.get();
+			if(current.isActive()){
+				Log.v(TAG, "joining the flow in " + current.phase());
+				return true;
+			}
+		} while(!mFlow.compareAndSet(current, FlowState.start(flowId)));
+		// The deadline is the last argument: after the id of configured dialogs, or after the dialog settings
+		long timeoutMs = args.length() <= 2 ? args.optLong(1, 0) : args.optLong(13, 0);
+		if(timeoutMs > 0){
+			mDeadline = scheduler().schedule(() -> endFlowEarly(flowId, PermissionStatus.TIMEOUT), timeoutMs, TimeUnit.MILLISECONDS);
+		}
+		if(mAnalytics.countPhase(FlowState.Phase.STARTING)){
+			persistAnalytics();
+		}
+		long submitted = PermissionMetrics.start();
 		cordova.getThreadPool().execute(() -> {
+			mMetrics.record(PermissionMetrics.PHASE_THREAD_POOL_WAIT, submitted);
 			try {
-				String showRationale = args.getString(0);
-				boolean weWantRationale = showRationale.equals("true") ? true : false;
+				long parseStart = PermissionMetrics.start();
+				DialogConfig rationale;
+				DialogConfig lastResort;
+				if(args.length() <= 2){
+					// Only the id of dialogs registered with configure has been passed
+					DialogConfig[] dialogs = mConfigs.get(args.getString(0));
+					if(dialogs == null){
+						throw new JSONException("No dialogs configured with id " + args.getString(0));
+					}
+					rationale = dialogs[CONFIG_RATIONALE];
+					lastResort = dialogs[CONFIG_LAST_RESORT];
+				}
+				else{
+					rationale = parseRationaleDialog(args);
+					lastResort = parseLastResortDialog(args);
+					if(mPrewarm){
+						// Use the prepared configs when the content is unchanged
+						if(rationale.equals(mPrewarmedRationale)){
+							rationale = mPrewarmedRationale;
+						}
+						if(lastResort.equals(mPrewarmedLastResort)){
+							lastResort = mPrewarmedLastResort;
+						}
+					}
+				}
+				mMetrics.record(PermissionMetrics.PHASE_ARG_PARSE, parseStart);
+				FlowState flow = flowIn(FlowState.Phase.STARTING);
+				if(flow == null){
+					return;
+				}
+				// Set text for extra dialog and its buttons, and the potential last resort dialog
+				FlowState starting = flow.withDialogs(rationale, lastResort);
+				if(!moveFlow(flow, starting)){
+					return;
+				}
 
-				if (cordova.hasPermission(PERMISSION)) {
+				if (mPermissionOracle.hasPermission(PERMISSION)) {
 					// Already have permission, return ALREADY_GRANTED
-					String result = GRANTED_ALREADY;
-					Log.v(TAG, result);
-					PluginResult.Status status = PluginResult.Status.OK;
-					callbackContext.sendPluginResult(new PluginResult(status, result));
-				} else if (weWantRationale && shouldShowRationale()) {
-					// Set text for extra dialog and its buttons
-
-					String rationaleTitle = args.getString(1);
-					String rationaleMsg = args.getString(2);
-					String positiveButton = args.getString(3);
-					String negativeButton = args.getString(4);
-					int rationaleTheme = Integer.parseInt(args.getString(5));
-					setExtraDialog(weWantRationale, rationaleTitle, rationaleMsg, positiveButton, negativeButton, rationaleTheme);
-					showExtraDialog(false);
+					sendResult(FlowState.Phase.STARTING, PermissionStatus.GRANTED_ALREADY);
+				} else if (stateStore().isCoolingDown(mPromptScheduler, System.currentTimeMillis())) {
+					// The user denied recently, do not ask again yet
+					sendCoolingDownResult();
+				} else if (rationale.shouldShow() && shouldShowRationale()) {
+					if(moveFlow(starting, starting.to(FlowState.Phase.RATIONALE_SHOWN))){
+						showExtraDialog(false);
+					}
 				} else {
-					// Set the potential last resort dialog
-					String showLastResort = args.getString(6);
-					boolean weWantLastResort = showLastResort.equals("true") ? true : false;
-					String lastResortTitle = args.getString(7);
-					String lastResortMsg = args.getString(8);
-					String positiveButton = args.getString(9);
-					String negativeButton = args.getString(10);
-					int lastResortTheme = Integer.parseInt(args.getString(5));
-					setExtraDialog(weWantLastResort, lastResortTitle, lastResortMsg, positiveButton, negativeButton, lastResortTheme);
 					// Save the status now in order to determine at return whether request is permanently denied.
-					beforeClickPermissionRat = shouldShowRationale();
-					cordova.requestPermission(mInstance, REQUEST_CODE_PERMISSION, PERMISSION);
+					if(moveFlow(starting, starting.toOsPrompt(shouldShowRationale(), false))){
+						requestPermission(flowId);
+					}
+				}
+
+			} catch (JSONException | RuntimeException e) {
+				// E.g. a theme that is not a number: end the flow, whatever its phase, or every caller waits forever
+				Log.e(TAG, "the permission flow failed: " + e);
+				if(endFlowNow(flowId) != null){
+					PluginResult.Status status = PluginResult.Status.ERROR;
+					mCoalescer.resolve(new PluginResult(status, e.toString()));
+				}
+			}
+		});
+		return true;
+	}
+
+	/**
+	 * Ask several permissions in one batch. No dialogs are shown, the status of every
+	 * permission is returned in one JSONObject keyed by permission. A call for the same
+	 * permissions as a batch in flight gets the results of that batch. Other batches, and
+	 * maybeAskPermission, wait until the OS has answered the request in flight.
+	 *
+	 * @param permissions     The permissions to ask.
+	 * @param callbackContext The callback context used when calling back into JavaScript.
+	 */
+	private void maybeAskPermissions(JSONArray permissions, CallbackContext callbackContext) throws JSONException {
+		TreeSet<String> permissionSet = new TreeSet<>();
+		for(int i = 0; i < permissions.length(); i++){
+			permissionSet.add(permissions.getString(i));
+		}
+		String key = permissionSet.toString();
+		PermissionRequestCoalescer coalescer = mBatchCoalescers.get(key);
+		if(coalescer == null){
+			coalescer = new PermissionRequestCoalescer();
+			PermissionRequestCoalescer existing = mBatchCoalescers.putIfAbsent(key, coalescer);
+			if(existing != null){
+				coalescer = existing;
+			}
+		}
+		if(!coalescer.join(callbackContext)){
+			// A batch of the same permissions is in flight already, this caller will get its results.
+			return;
+		}
+		JSONObject results = new JSONObject();
+		List<String> toRequest = new ArrayList<>();
+		for(int i = 0; i < permissions.length(); i++){
+			String permission = permissions.getString(i);
+			if(PERMISSION.equals(permission) && Build.VERSION.SDK_INT < Build.VERSION_CODES.TIRAMISU){
+				results.put(permission, PermissionStatus.NOT_NEEDED.value());
+			}
+			else if(mPermissionOracle.hasPermission(permission)){
+				results.put(permission, PermissionStatus.GRANTED_ALREADY.value());
+				if(PERMISSION.equals(permission)){
+					recordStatus(PermissionStatus.GRANTED_ALREADY);
 				}
+			}
+			else if(!toRequest.contains(permission)){
+				toRequest.add(permission);
+			}
+		}
+		if(toRequest.isEmpty()){
+			coalescer.resolve(new PluginResult(PluginResult.Status.OK, results));
+			return;
+		}
+		Batch batch = new Batch(coalescer, toRequest.toArray(new String[0]), results);
+		long requestId = mFlowIds.incrementAndGet();
+		mBatches.put(requestId, batch);
+		mRequestGate.submit(requestId, () -> {
+			boolean[] beforeClickPermissionRat = new boolean[batch.permissions.length];
+			for(int i = 0; i < batch.permissions.length; i++){
+				// Save the status now in order to determine at return whether request is permanently denied.
+				beforeClickPermissionRat[i] = shouldShowRationale(batch.permissions[i]);
+			}
+			batch.beforeClickPermissionRat = beforeClickPermissionRat;
+			mOsPromptStart = PermissionMetrics.start();
+			mPermissionOracle.requestPermissions(mInstance, REQUEST_CODE_PERMISSIONS, batch.permissions);
+			return true;
+		});
+	}
+
+	/**
+	 * Answer the current status right on the bridge thread, without showing any dialog
+	 * and without parsing the dialog arguments.
+	 *
+	 * @param callbackContext The callback context used when calling back into JavaScript.
+	 */
+	private void checkStatus(CallbackContext callbackContext) {
+		if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU && !mPermissionOracle.hasPermission(PERMISSION)){
+			// The last denied status is needed, do not hold up the bridge while it is still being loaded
+			whenStateLoaded(() -> callbackContext.sendPluginResult(currentStatus().result()));
+			return;
+		}
+		callbackContext.sendPluginResult(currentStatus().result());
+	}
 
-			} catch (JSONException e) {
-				PluginResult.Status status = PluginResult.Status.ERROR;
-				mCallbackContext.sendPluginResult(new PluginResult(status, e.toString()));
+	/**
+	 * @return GRANTED_ALREADY, NOT_NEEDED, the last denied status or NOT_DETERMINED.
+	 */
+	private PermissionStatus currentStatus() {
+		PermissionStatus result;
+		PermissionStatus lastDeniedStatus;
+		if(Build.VERSION.SDK_INT < Build.VERSION_CODES.TIRAMISU){
+			result = PermissionStatus.NOT_NEEDED;
+		}
+		else if(mPermissionOracle.hasPermission(PERMISSION)){
+			result = PermissionStatus.GRANTED_ALREADY;
+		}
+		else if((lastDeniedStatus = stateStore().getLastDeniedStatus()) != null){
+			result = lastDeniedStatus;
+		}
+		else{
+			result = PermissionStatus.NOT_DETERMINED;
+		}
+		return result;
+	}
+
+	/**
+	 * Stop all watchers. Each callback is ended with CANCELLED, so Cordova releases it.
+	 */
+	private void stopWatchers() {
+		for(CallbackContext watcher : mWatchers){
+			// Once, also when stopped from two threads at the same time
+			if(mWatchers.remove(watcher)){
+				watcher.sendPluginResult(PermissionStatus.CANCELLED.result());
 			}
+		}
+		mMainHandler.removeCallbacks(mCheckWatchedPermission);
+	}
+
+	/**
+	 * Keep the callback open and push the status each time the permission is granted or revoked.
+	 * The current status is sent right away.
+	 *
+	 * @param callbackContext The callback context used when calling back into JavaScript.
+	 */
+	private void watchPermission(CallbackContext callbackContext) {
+		whenStateLoaded(() -> {
+			PermissionStatus status = currentStatus();
+			mWatchedAllowed = isAllowed(status);
+			mWatchers.add(callbackContext);
+			callbackContext.sendPluginResult(status.keepCallbackResult());
 		});
+	}
+
+	/**
+	 * Check for a change of the permission and push it to the watchers. Runs once after a burst of resumes.
+	 */
+	private final Runnable mCheckWatchedPermission = new Runnable() {
+		@Override
+		public void run() {
+			if(mWatchers.isEmpty()){
+				return;
+			}
+			// Runs on the UI thread, the watchers have loaded the state already
+			PermissionStatus status = currentStatus();
+			boolean allowed = isAllowed(status);
+			if(allowed == mWatchedAllowed){
+				// Nothing changed, nothing to push
+				return;
+			}
+			mWatchedAllowed = allowed;
+			Log.v(TAG, "permission changed: " + status.value());
+			for(CallbackContext watcher : mWatchers){
+				watcher.sendPluginResult(status.keepCallbackResult());
+			}
+		}
+	};
+
+	/**
+	 * @param status The current status.
+	 * @return Whether notifications can be shown.
+	 */
+	private static boolean isAllowed(PermissionStatus status) {
+		return status.isGranted() || status == PermissionStatus.NOT_NEEDED;
+	}
+
+	/**
+	 * End the permission flow in flight, sending the result to every caller that is waiting for it.
+	 * Does nothing if the flow is not in the given phase, so a result is sent only once.
+	 *
+	 * @param from   The phase the flow ends from.
+	 * @param result The status to send.
+	 */
+	private void sendResult(FlowState.Phase from, PermissionStatus result) {
+		if(!endFlow(from)){
+			return;
+		}
+		deliverResult(result);
+	}
+
+	/**
+	 * Send the result of a flow that has just ended to every caller that is waiting for it.
+	 *
+	 * @param result The status to send.
+	 */
+	private void deliverResult(PermissionStatus result) {
+		// The flow ends, there is nothing to restore anymore
+		stateStore().saveFlowSnapshot(0);
+		Log.v(TAG, result.value());
+		recordStatus(result);
+		rememberStatus(result);
+		mCoalescer.resolve(result.result());
+	}
+
+	/**
+	 * Count a status of POST_NOTIFICATIONS that is about to be sent, by maybeAskPermission or in a
+	 * batch, and keep it for the backoff if the user has been asked. Written by rememberStatus().
+	 *
+	 * @param result The status.
+	 */
+	private void recordStatus(PermissionStatus result) {
+		mMetrics.count(result);
+		if(mAnalytics.countStatus(result)){
+			persistAnalytics();
+		}
+		if(result != PermissionStatus.GRANTED_ALREADY && (result.isGranted() || result.isDenied())){
+			// The user has been asked, keep the outcome for the backoff
+			stateStore().recordPrompt(System.currentTimeMillis(), result);
+		}
+	}
+
+	/**
+	 * End the permission flow in flight without asking, because a backoff window is active.
+	 * Sends the last denied status, and does not change the history so the window is not extended.
+	 */
+	private void sendCoolingDownResult() {
+		if(!endFlow(FlowState.Phase.STARTING)){
+			return;
+		}
+		PermissionStatus result = stateStore().getLastDeniedStatus();
+		if(result == null){
+			result = stateStore().getLastPromptStatus();
+		}
+		Log.v(TAG, "cooling down: " + result.value());
+		mMetrics.count(result);
+		if(mAnalytics.countStatus(result)){
+			persistAnalytics();
+		}
+		mCoalescer.resolve(result.result());
+	}
+
+	/**
+	 * Move the flow to DONE in one atomic step.
+	 *
+	 * @param from The phase the flow ends from.
+	 * @return Whether the flow has ended, false if it was not in that phase: the result has been sent already.
+	 */
+	private boolean endFlow(FlowState.Phase from) {
+		FlowState flow = flowIn(from);
+		if(flow == null || !moveFlow(flow, flow.to(FlowState.Phase.DONE))){
+			return false;
+		}
+		cancelDeadline();
 		return true;
 	}
 
+	/**
+	 * End the flow in flight whatever its phase, because its deadline passed or it has been cancelled.
+	 * A dialog that is showing is dismissed. The OS prompt cannot be closed by an app: it stays until
+	 * the user answers it, its result is matched to this flow and not sent, and the request of a
+	 * later flow is held off until then. A result of system settings that arrives later is ignored.
+	 *
+	 * @param flowId The id of the flow to end, 0 for the flow in flight whichever it is.
+	 * @param result TIMEOUT or CANCELLED.
+	 */
+	private void endFlowEarly(long flowId, PermissionStatus result) {
+		if(endFlowNow(flowId) != null){
+			deliverResult(result);
+		}
+	}
+
+	/**
+	 * Move the flow in flight to DONE whatever its phase, without sending a result.
+	 * A dialog that is showing is dismissed.
+	 *
+	 * @param flowId The id of the flow to end, 0 for the flow in flight whichever it is.
+	 * @return The state the flow has ended from, or null if it had ended already.
+	 */
+	private FlowState endFlowNow(long flowId) {
+		FlowState flow;
+		do {
+			flow = mFlow.get();
+			if(!flow.isActive() || (flowId != 0 && flow.id() != flowId)){
+				return null;
+			}
+		} while(!mFlow.compareAndSet(flow, flow.to(FlowState.Phase.DONE)));
+		cancelDeadline();
+		if(flow.phase() == FlowState.Phase.RATIONALE_SHOWN || flow.phase() == FlowState.Phase.LAST_RESORT_SHOWN){
+			dismissDialog();
+		}
+		return flow;
+	}
+
+	/**
+	 * Stop the deadline of the flow that has just ended.
+	 */
+	private void cancelDeadline() {
+		ScheduledFuture<?> deadline = mDeadline;
+		mDeadline = null;
+		if(deadline != null){
+			deadline.cancel(false);
+		}
+	}
+
+	/**
+	 * @return The executor that runs the deadlines of all flows.
+	 */
+	private synchronized ScheduledExecutorService scheduler() {
+		if(mScheduler == null){
+			mScheduler = Executors.newSingleThreadScheduledExecutor();
+		}
+		return mScheduler;
+	}
+
+	/**
+	 * Dismiss the rationale or last resort dialog, without calling its ClickCallback.
+	 */
+	private void dismissDialog() {
+		AppCompatActivity activity = cordova.getActivity();
+		activity.runOnUiThread(() -> {
+			Fragment dialog = activity.getSupportFragmentManager().findFragmentByTag(DIALOG_ID);
+			if(dialog instanceof DialogFragment){
+				((DialogFragment) dialog).dismissAllowingStateLoss();
+			}
+		});
+	}
+
+	/**
+	 * Keep track of the last denied status, so checkStatus can report it later on.
+	 * A granted status clears it. Also writes all changed state to storage in one batch.
+	 *
+	 * @param result The status that is about to be sent to JavaScript.
+	 */
+	private void rememberStatus(PermissionStatus result) {
+		rememberStatus(stateStore(), result);
+	}
+
+	/**
+	 * Keep track of the last denied status of a permission. A granted status clears it.
+	 * Also writes all changed state of the permission to storage in one batch.
+	 *
+	 * @param stateStore The state of the permission.
+	 * @param result     The status that is about to be sent to JavaScript.
+	 */
+	private void rememberStatus(PermissionStateStore stateStore, PermissionStatus result) {
+		PermissionStatus lastDeniedStatus;
+		if(result.isDenied()){
+			lastDeniedStatus = result;
+		}
+		else if(result.isGranted()){
+			lastDeniedStatus = null;
+		}
+		else{
+			stateStore.flush();
+			return;
+		}
+		stateStore.saveLastDeniedStatus(lastDeniedStatus);
+		stateStore.flush();
+		// Background work should see the new status right away
+		NotificationsPermissionState.invalidate();
+	}
+
+	/**
+	 * @param permission The permission to get the state of.
+	 * @return The state of the permission, loaded on first use.
+	 */
+	private PermissionStateStore getStateStore(String permission) {
+		if(PERMISSION.equals(permission)){
+			return stateStore();
+		}
+		PermissionStateStore stateStore = mStateStores.get(permission);
+		if(stateStore == null){
+			stateStore = new PermissionStateStore(mStorageFactory.create(permission));
+			PermissionStateStore existing = mStateStores.putIfAbsent(permission, stateStore);
+			if(existing != null){
+				stateStore = existing;
+			}
+		}
+		return stateStore;
+	}
+
+	/**
+	 * Ask the OS for the permission, keeping track of how long the prompt takes. Held off while
+	 * the prompt of an earlier flow is still showing, which happens when that flow timed out or
+	 * has been cancelled: Android would answer a second request right away without a result.
+	 *
+	 * @param flowId The id of the flow in OS_PROMPT that asks.
+	 */
+	private void requestPermission(long flowId) {
+		mRequestGate.submit(flowId, () -> {
+			FlowState flow = mFlow.get();
+			if(flow.phase() != FlowState.Phase.OS_PROMPT || flow.id() != flowId){
+				// Ended while held off
+				return false;
+			}
+			if(mPermissionOracle.hasPermission(PERMISSION)){
+				// Granted in the prompt of the earlier flow
+				sendResult(FlowState.Phase.OS_PROMPT, PermissionStatus.GRANTED_ALREADY);
+				return false;
+			}
+			// The answer to the earlier prompt may have changed whether a rationale is advised
+			boolean beforeClickPermissionRat = shouldShowRationale();
+			if(beforeClickPermissionRat != flow.beforeClickPermissionRat() && !moveFlow(flow, flow.withBeforeClickPermissionRat(beforeClickPermissionRat))){
+				return false;
+			}
+			mOsPromptStart = PermissionMetrics.start();
+			mPermissionOracle.requestPermissions(mInstance, REQUEST_CODE_PERMISSION, new String[]{PERMISSION});
+			return true;
+		});
+	}
+
 	/**
 	 * Check if rationale for permission should be shown.
 	 *
 	 * @return True if rationale should be shown, false otherwise.
 	 */
 	private boolean shouldShowRationale() {
-		if (ActivityCompat.shouldShowRequestPermissionRationale(cordova.getActivity(), PERMISSION)) {
+		return shouldShowRationale(PERMISSION);
+	}
+
+	/**
+	 * Check if rationale for a permission should be shown.
+	 *
+	 * @param permission The permission to check.
+	 * @return True if rationale should be shown, false otherwise.
+	 */
+	private boolean shouldShowRationale(String permission) {
+		if (mPermissionOracle.shouldShowRationale(permission)) {
 			return true;
 		}
 		return false;
 	}
 	/**
-	 * Show the permission rationale dialog.
+	 * Parse the rationale dialog settings, as sent by www/NotificationsPermission.js.
+	 *
+	 * @param args The arguments of maybeAskPermission.
+	 * @return The rationale dialog settings.
+	 * @throws JSONException If an argument is missing.
+	 */
+	private static DialogConfig parseRationaleDialog(JSONArray args) throws JSONException {
+		return new DialogConfig(
+				args.getString(0).equals("true"),
+				args.getString(1),
+				args.getString(2),
+				args.getString(3),
+				args.getString(4),
+				Integer.parseInt(args.getString(5)));
+	}
+
+	/**
+	 * Parse the last resort dialog settings, as sent by www/NotificationsPermission.js.
+	 *
+	 * @param args The arguments of maybeAskPermission.
+	 * @return The last resort dialog settings.
+	 * @throws JSONException If an argument is missing.
+	 */
+	private static DialogConfig parseLastResortDialog(JSONArray args) throws JSONException {
+		return new DialogConfig(
+				args.getString(6).equals("true"),
+				args.getString(7),
+				args.getString(8),
+				args.getString(9),
+				args.getString(10),
+				Integer.parseInt(args.getString(11)),
+				optChannelId(args, 12));
+	}
+
+	/**
+	 * @param args  The arguments.
+	 * @param index The index of the optional channel id.
+	 * @return The channel id, or null if it is missing or empty.
+	 */
+	private static String optChannelId(JSONArray args, int index) {
+		String channelId = args.optString(index, "");
+		return channelId.isEmpty() ? null : channelId;
+	}
+
+	/**
+	 * @param lastResort The settings of the last resort dialog.
+	 * @return The intent to open the notification settings of the app, or of one of its channels.
+	 */
+	private Intent settingsIntent(DialogConfig lastResort) {
+		String channelId = lastResort == null ? null : lastResort.settingsChannelId();
+		if(channelId == null){
+			return new Intent(Settings.ACTION_ALL_APPS_NOTIFICATION_SETTINGS);
+		}
+		return new Intent(Settings.ACTION_CHANNEL_NOTIFICATION_SETTINGS)
+				.putExtra(Settings.EXTRA_APP_PACKAGE, cordova.getContext().getPackageName())
+				.putExtra(Settings.EXTRA_CHANNEL_ID, channelId);
+	}
+
+	/**
+	 * Register the rationale and last resort dialogs under an id, so maybeAskPermission can be
+	 * called with just that id. The arguments are typed and start with the version of their format:
+	 * [version, id, show, title, msg, positiveButton, negativeButton, theme] followed by
+	 * [show, title, msg, positiveButton, negativeButton, theme] for the last resort dialog, and optionally
+	 * the notification channel the last resort dialog opens in system settings.
 	 *
-	 * @param title 		 Title of the dialog
-	 * @param msg   		The message to be displayed in the dialog.
-	 * @param positiveButton The text for the positive button.
-	 * @param negativeButton The text for the negative button.
-	 * @param theme           The theme resource ID for the dialog.
+	 * @param args            The arguments of configure.
+	 * @param callbackContext The callback context used when calling back into JavaScript.
+	 * @throws JSONException If an argument is missing or has the wrong type.
 	 */
-	private void setExtraDialog(@NonNull boolean showDialog,
-								@NonNull String title,
-								@NonNull String msg,
-								@NonNull String positiveButton,
-								@NonNull String negativeButton,
-								@StyleRes int theme){
-		mShowDialog = showDialog;
-		mTitle = title;
-		mMsg = msg;
-		mPositiveButton = positiveButton;
-		mNegativeButton = negativeButton;
-		mTheme = theme;
+	private void configure(JSONArray args, CallbackContext callbackContext) throws JSONException {
+		int version = args.getInt(0);
+		if(version != CONFIG_VERSION){
+			callbackContext.error("Unsupported config version " + version);
+			return;
+		}
+		DialogConfig[] dialogs = new DialogConfig[2];
+		dialogs[CONFIG_RATIONALE] = parseTypedDialog(args, 2, null).prewarm(mRationaleCallbackId);
+		dialogs[CONFIG_LAST_RESORT] = parseTypedDialog(args, 8, optChannelId(args, 14)).prewarm(mLastResortCallbackId);
+		mConfigs.put(args.getString(1), dialogs);
+		callbackContext.success();
+	}
 
+	/**
+	 * Parse dialog settings in the typed format of configure.
+	 *
+	 * @param args              The arguments of configure.
+	 * @param offset            The index of the first setting of the dialog.
+	 * @param settingsChannelId The notification channel to open in system settings, or null.
+	 * @return The dialog settings.
+	 * @throws JSONException If an argument is missing or has the wrong type.
+	 */
+	private static DialogConfig parseTypedDialog(JSONArray args, int offset, String settingsChannelId) throws JSONException {
+		return new DialogConfig(
+				args.getBoolean(offset),
+				args.getString(offset + 1),
+				args.getString(offset + 2),
+				args.getString(offset + 3),
+				args.getString(offset + 4),
+				args.getInt(offset + 5),
+				settingsChannelId);
+	}
+
+	/**
+	 * Turn on pre-warm mode: prepare the dialogs now, so showing them later on is cheaper.
+	 *
+	 * @param args The same arguments as for maybeAskPermission.
+	 * @throws JSONException If an argument is missing.
+	 */
+	private void prewarmDialogs(JSONArray args) throws JSONException {
+		DialogConfig rationale = parseRationaleDialog(args).prewarm(mRationaleCallbackId);
+		DialogConfig lastResort = parseLastResortDialog(args).prewarm(mLastResortCallbackId);
+		mPrewarmedRationale = rationale;
+		mPrewarmedLastResort = lastResort;
+		mPrewarm = true;
+		AppCompatActivity activity = cordova.getActivity();
+		// Building a dialog lays out its views, do it now rather than in the frame that shows it
+		activity.runOnUiThread(() -> {
+			if(rationale.shouldShow()){
+				PermissionsDialogFragment.prepare(activity, rationale.arguments(mRationaleCallbackId));
+			}
+			if(lastResort.shouldShow()){
+				PermissionsDialogFragment.prepare(activity, lastResort.arguments(mLastResortCallbackId));
+			}
+		});
 	}
 	/**
 	 * @param doSettings     Whether we show a button to settings as OK button
+	 * @return Whether the dialog is shown
 	 */
-	public void showExtraDialog(
+	public boolean showExtraDialog(
 			@NonNull boolean doSettings
 			) {
-		if(mShowDialog == false){
-			return;
+		FlowState flow = mFlow.get();
+		DialogConfig config = doSettings ? flow.lastResort() : flow.rationale();
+		if(config == null || !config.shouldShow()){
+			return false;
 		}
-		ClickCallback dialogClickCallback;
+		// Recorded by the fragment once the dialog is on screen
+		long displayStart = PermissionMetrics.start();
+		String callbackId;
 		if(doSettings == true){
-			dialogClickCallback = mCLickCallbackLastResort;
+			callbackId = mLastResortCallbackId;
 		}
 		else{
-			dialogClickCallback = mClickCallbackRationale;
+			callbackId = mRationaleCallbackId;
 		}
 		AppCompatActivity activity = cordova.getActivity();
 		// DialogFragment.show() will take care of adding the fragment
@@ -327,29 +1404,98 @@ public class NotificationsPermission extends CordovaPlugin {
 		if (prev != null) {
 			ft.remove(prev);
 		}
-		ft.addToBackStack(null);
+		if(!mPrewarm){
+			// Pre-warm mode leaves the back stack alone
+			ft.addToBackStack(null);
+		}
 		// Create and show the dialog.
-		DialogFragment newFragment = PermissionsDialogFragment.newInstance(
-				mTitle, mMsg, mPositiveButton, mNegativeButton, mTheme, dialogClickCallback);
+		DialogFragment newFragment = PermissionsDialogFragment.newInstance(config, callbackId, displayStart);
 		newFragment.show(ft, DIALOG_ID);
+		return true;
 	}
+
 	@Override
 	public void onResume(boolean multitasking){
-		if(mUserWentToSettings == true){
-			String result = "";
-			if (cordova.hasPermission(PERMISSION)) {
+		// Notifications may have been turned on or off in system settings while in the background
+		NotificationsPermissionState.invalidate();
+		// A restored flow is only known once the state has been loaded, which is not waited for on the UI thread
+		whenStateLoaded(mCheckSettingsResult);
+		if(!mWatchers.isEmpty()){
+			mMainHandler.removeCallbacks(mCheckWatchedPermission);
+			mMainHandler.postDelayed(mCheckWatchedPermission, WATCH_DEBOUNCE_MS);
+		}
+	}
+
+	/**
+	 * Send the result of the flow that is waiting for the user to come back from system settings, if any.
+	 */
+	private final Runnable mCheckSettingsResult = new Runnable() {
+		@Override
+		public void run() {
+			if(mFlow.get().phase() != FlowState.Phase.SETTINGS){
+				return;
+			}
+			if(mSettingsStart != 0){
+				// Not known when the flow has been restored after the process was killed
+				mMetrics.record(PermissionMetrics.PHASE_SETTINGS_ROUND_TRIP, mSettingsStart);
+				if(mAnalytics.recordSettingsRoundTrip((System.nanoTime() - mSettingsStart) / 1000000)){
+					persistAnalytics();
+				}
+			}
+			PermissionStatus result;
+			if (mPermissionOracle.hasPermission(PERMISSION)) {
 				// We got permission, return NEWLY_GRANTED_AFTER_LAST_RESORT
-				result = GRANTED_NEWLY_AFTER_SETTINGS;
+				result = PermissionStatus.GRANTED_NEWLY_AFTER_SETTINGS;
 
 			}
 			else{
-				result = DENIED_PERMANENTLY_ALREADY_AFTER_SETTINGS;
+				result = PermissionStatus.DENIED_PERMANENTLY_ALREADY_AFTER_SETTINGS;
 			}
-			Log.v(TAG, result);
-			PluginResult.Status status = PluginResult.Status.OK;
-			mCallbackContext.sendPluginResult(new PluginResult(status, result));
-			mUserWentToSettings = false;
+			sendResult(FlowState.Phase.SETTINGS, result);
 		}
+	};
 
+	@Override
+	public void onPause(boolean multitasking) {
+		// The process may be killed while in the background, keep what has been counted
+		persistAnalytics();
+	}
+
+	@Override
+	public void onReset() {
+		// The page has been reloaded: the callers of the flow and of the batches in flight are gone.
+		// The flow ends without a result, a new page must be able to start one.
+		FlowState ended = endFlowNow(0);
+		if(ended != null && ended.phase() == FlowState.Phase.SETTINGS){
+			// Nothing to restore anymore
+			stateStore().saveFlowSnapshot(0);
+			stateStore().flush();
+		}
+		mCoalescer.reset();
+		for(PermissionRequestCoalescer coalescer : mBatchCoalescers.values()){
+			coalescer.reset();
+		}
+		// The batches that wait for the OS keep their reset coalescer, a new batch gets a new one
+		mBatchCoalescers.clear();
+		// The watchers are gone too
+		stopWatchers();
+	}
+
+	@Override
+	public void onDestroy() {
+		// Keeps the callbacks of the instance that has replaced this one
+		ClickCallbackRegistry.unregister(mRationaleCallbackId, mClickCallbackRationale);
+		ClickCallbackRegistry.unregister(mLastResortCallbackId, mCLickCallbackLastResort);
+		PermissionsDialogFragment.clearPrepared(mRationaleCallbackId, cordova.getActivity());
+		PermissionsDialogFragment.clearPrepared(mLastResortCallbackId, cordova.getActivity());
+		persistAnalytics();
+		synchronized(this){
+			if(mScheduler != null){
+				// Drops the deadlines that are still pending
+				mScheduler.shutdownNow();
+				mScheduler = null;
+			}
+		}
+		stopWatchers();
 	}
 }
\ No newline at end of file
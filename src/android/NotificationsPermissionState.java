@@ -0,0 +1,90 @@
+package nl.klaasmaakt.cordova.notifications_permission;
+
+import android.Manifest;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.os.SystemClock;
+import androidx.core.app.NotificationManagerCompat;
+import androidx.core.content.ContextCompat;
+
+/**
+ * Whether notifications can be posted, as known to the plugin, without an Activity or WebView.
+ * For background work such as services and WorkManager jobs, which can skip building
+ * notifications that would be dropped. Immutable; query() can be called from any thread.
+ */
+public final class NotificationsPermissionState {
+
+    // How long a classification is reused before the system is asked again
+    private static final long CACHE_MILLIS = 1000;
+
+    private static volatile NotificationsPermissionState sCached;
+
+    private final PermissionStatus mStatus;
+    private final boolean mNotificationsEnabled;
+    private final long mQueriedAt;
+
+    private NotificationsPermissionState(PermissionStatus status, boolean notificationsEnabled, long queriedAt) {
+        mStatus = status;
+        mNotificationsEnabled = notificationsEnabled;
+        mQueriedAt = queriedAt;
+    }
+
+    /**
+     * Get the state, reusing the last classification if it is recent.
+     *
+     * @param context Any context, the application context is used.
+     * @return The state.
+     */
+    public static NotificationsPermissionState query(Context context) {
+        long now = SystemClock.elapsedRealtime();
+        NotificationsPermissionState cached = sCached;
+        if (cached != null && now - cached.mQueriedAt < CACHE_MILLIS) {
+            return cached;
+        }
+        Context appContext = context.getApplicationContext();
+        PermissionStatus status;
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.TIRAMISU) {
+            status = PermissionStatus.NOT_NEEDED;
+        } else if (ContextCompat.checkSelfPermission(appContext, Manifest.permission.POST_NOTIFICATIONS) == PackageManager.PERMISSION_GRANTED) {
+            status = PermissionStatus.GRANTED_ALREADY;
+        } else {
+            status = PermissionStatus.fromValue(new Utils(appContext).readLastDeniedStatus());
+            if (status == null) {
+                status = PermissionStatus.NOT_DETERMINED;
+            }
+        }
+        boolean notificationsEnabled = NotificationManagerCompat.from(appContext).areNotificationsEnabled();
+        NotificationsPermissionState state = new NotificationsPermissionState(status, notificationsEnabled, now);
+        sCached = state;
+        return state;
+    }
+
+    /**
+     * Drop the cached classification, e.g. because the plugin has just sent a new status.
+     */
+    public static void invalidate() {
+        sCached = null;
+    }
+
+    /**
+     * @return GRANTED_ALREADY, NOT_NEEDED, the last denied status or NOT_DETERMINED, as checkStatus returns them.
+     */
+    public PermissionStatus status() {
+        return mStatus;
+    }
+
+    /**
+     * @return Whether notifications are enabled for the app, which also covers the user turning them off in system settings.
+     */
+    public boolean areNotificationsEnabled() {
+        return mNotificationsEnabled;
+    }
+
+    /**
+     * @return Whether a notification that is posted now will be shown, as far as the app level is concerned.
+     */
+    public boolean canPostNotifications() {
+        return mNotificationsEnabled && (mStatus == PermissionStatus.GRANTED_ALREADY || mStatus == PermissionStatus.NOT_NEEDED);
+    }
+}
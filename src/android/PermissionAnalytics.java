@@ -0,0 +1,232 @@
+package nl.klaasmaakt.cordova.notifications_permission;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Funnel counters of the permission flows, kept on the device until drained: how often each
+ * status has been sent, how often one status followed another, how often each phase of the
+ * flow has been entered and how long the round trips to system settings took. Counters have
+ * a fixed size, recording is lock free, and storage is only written once every
+ * PERSIST_EVERY events or when persist() is called. Stored counters are keyed by status value
+ * and phase name, so they survive statuses and phases being added or reordered.
+ */
+public class PermissionAnalytics {
+
+    // Number of events after which the counters are written to storage
+    public static final int PERSIST_EVERY = 32;
+
+    private static final PermissionStatus[] STATUSES = PermissionStatus.values();
+    private static final FlowState.Phase[] PHASES = FlowState.Phase.values();
+    private static final int STATUS_COUNT = STATUSES.length;
+    // Row STATUS_COUNT of the transitions holds the first status since the plugin started
+    private static final int FROM_NONE = STATUS_COUNT;
+    // Layout of the counters: statuses, transitions, phases, settings round trip
+    private static final int OFFSET_STATUSES = 0;
+    private static final int OFFSET_TRANSITIONS = OFFSET_STATUSES + STATUS_COUNT;
+    private static final int OFFSET_PHASES = OFFSET_TRANSITIONS + (STATUS_COUNT + 1) * STATUS_COUNT;
+    private static final int OFFSET_SETTINGS = OFFSET_PHASES + PHASES.length;
+    private static final int SETTINGS_COUNT = OFFSET_SETTINGS;
+    private static final int SETTINGS_TOTAL_MILLIS = OFFSET_SETTINGS + 1;
+    private static final int SETTINGS_MAX_MILLIS = OFFSET_SETTINGS + 2;
+    private static final int COUNTER_COUNT = OFFSET_SETTINGS + 3;
+    // The key each counter is stored under, and the counter of each key
+    private static final String[] KEYS = new String[COUNTER_COUNT];
+    private static final Map<String, Integer> INDEXES = new HashMap<>();
+
+    static {
+        for (int to = 0; to < STATUS_COUNT; to++) {
+            KEYS[OFFSET_STATUSES + to] = "status:" + STATUSES[to].value();
+            for (int from = 0; from <= FROM_NONE; from++) {
+                KEYS[OFFSET_TRANSITIONS + from * STATUS_COUNT + to] = "transition:" + transitionKey(from, to);
+            }
+        }
+        for (FlowState.Phase phase : PHASES) {
+            KEYS[OFFSET_PHASES + phase.ordinal()] = "phase:" + phase.name();
+        }
+        KEYS[SETTINGS_COUNT] = "settings:count";
+        KEYS[SETTINGS_TOTAL_MILLIS] = "settings:totalMillis";
+        KEYS[SETTINGS_MAX_MILLIS] = "settings:maxMillis";
+        for (int i = 0; i < COUNTER_COUNT; i++) {
+            INDEXES.put(KEYS[i], i);
+        }
+    }
+
+    // Counted since the last persist
+    private final AtomicLongArray mPending = new AtomicLongArray(COUNTER_COUNT);
+    private final AtomicInteger mPendingEvents = new AtomicInteger();
+    private final AtomicInteger mLastStatus = new AtomicInteger(FROM_NONE);
+
+    /**
+     * Count a status that has been sent to JavaScript, and the transition from the status before it.
+     *
+     * @param status The status.
+     * @return Whether the counters should be persisted now.
+     */
+    public boolean countStatus(PermissionStatus status) {
+        int from = mLastStatus.getAndSet(status.ordinal());
+        mPending.incrementAndGet(OFFSET_STATUSES + status.ordinal());
+        mPending.incrementAndGet(OFFSET_TRANSITIONS + from * STATUS_COUNT + status.ordinal());
+        return event();
+    }
+
+    /**
+     * Count a phase the permission flow has entered.
+     *
+     * @param phase The phase.
+     * @return Whether the counters should be persisted now.
+     */
+    public boolean countPhase(FlowState.Phase phase) {
+        mPending.incrementAndGet(OFFSET_PHASES + phase.ordinal());
+        return event();
+    }
+
+    /**
+     * Record a round trip to system settings.
+     *
+     * @param millis How long the user was away.
+     * @return Whether the counters should be persisted now.
+     */
+    public boolean recordSettingsRoundTrip(long millis) {
+        mPending.incrementAndGet(SETTINGS_COUNT);
+        mPending.addAndGet(SETTINGS_TOTAL_MILLIS, millis);
+        while (true) {
+            long max = mPending.get(SETTINGS_MAX_MILLIS);
+            if (millis <= max || mPending.compareAndSet(SETTINGS_MAX_MILLIS, max, millis)) {
+                break;
+            }
+        }
+        return event();
+    }
+
+    private boolean event() {
+        return mPendingEvents.incrementAndGet() % PERSIST_EVERY == 0;
+    }
+
+    /**
+     * @return Whether anything has been counted since the last persist.
+     */
+    public boolean hasPending() {
+        return mPendingEvents.get() != 0;
+    }
+
+    /**
+     * Add the counters since the last persist to the stored counters, in one write.
+     *
+     * @param storage The storage to keep the counters in.
+     */
+    public synchronized void persist(PermissionStateStorage storage) {
+        if (mPendingEvents.getAndSet(0) == 0) {
+            return;
+        }
+        long[] counters = merge(storage.readAnalytics());
+        storage.writeAnalytics(encode(counters));
+    }
+
+    /**
+     * Take all counters, stored and not stored yet, and reset them.
+     *
+     * @param storage The storage the counters are kept in.
+     * @return The counters, e.g. {"statuses":{"granted_already":3},"transitions":{"none>granted_already":1,"granted_already>granted_already":2},"phases":{"STARTING":3},"settingsRoundTrip":{"count":0,"totalMillis":0,"maxMillis":0}}
+     * @throws JSONException If the counters cannot be built.
+     */
+    public synchronized JSONObject drain(PermissionStateStorage storage) throws JSONException {
+        mPendingEvents.set(0);
+        long[] counters = merge(storage.readAnalytics());
+        storage.writeAnalytics(null);
+        JSONObject statuses = new JSONObject();
+        JSONObject transitions = new JSONObject();
+        for (int to = 0; to < STATUS_COUNT; to++) {
+            put(statuses, STATUSES[to].value(), counters[OFFSET_STATUSES + to]);
+            for (int from = 0; from <= FROM_NONE; from++) {
+                put(transitions, transitionKey(from, to), counters[OFFSET_TRANSITIONS + from * STATUS_COUNT + to]);
+            }
+        }
+        JSONObject phases = new JSONObject();
+        for (FlowState.Phase phase : PHASES) {
+            put(phases, phase.name(), counters[OFFSET_PHASES + phase.ordinal()]);
+        }
+        JSONObject settingsRoundTrip = new JSONObject();
+        settingsRoundTrip.put("count", counters[SETTINGS_COUNT]);
+        settingsRoundTrip.put("totalMillis", counters[SETTINGS_TOTAL_MILLIS]);
+        settingsRoundTrip.put("maxMillis", counters[SETTINGS_MAX_MILLIS]);
+        JSONObject aggregate = new JSONObject();
+        aggregate.put("statuses", statuses);
+        aggregate.put("transitions", transitions);
+        aggregate.put("phases", phases);
+        aggregate.put("settingsRoundTrip", settingsRoundTrip);
+        return aggregate;
+    }
+
+    private static String transitionKey(int from, int to) {
+        String fromValue = from == FROM_NONE ? "none" : STATUSES[from].value();
+        return fromValue + ">" + STATUSES[to].value();
+    }
+
+    private static void put(JSONObject counts, String key, long count) throws JSONException {
+        if (count != 0) {
+            counts.put(key, count);
+        }
+    }
+
+    /**
+     * Take the counters since the last persist and add them to the stored ones.
+     */
+    private long[] merge(String stored) {
+        long[] counters = decode(stored);
+        for (int i = 0; i < COUNTER_COUNT; i++) {
+            long pending = mPending.getAndSet(i, 0);
+            if (i == SETTINGS_MAX_MILLIS) {
+                counters[i] = Math.max(counters[i], pending);
+            } else {
+                counters[i] += pending;
+            }
+        }
+        return counters;
+    }
+
+    /**
+     * @return The counters that are not zero as key=count pairs, e.g. status:granted_already=3,phase:STARTING=3
+     */
+    static String encode(long[] counters) {
+        StringBuilder encoded = new StringBuilder();
+        for (int i = 0; i < counters.length; i++) {
+            if (counters[i] == 0) {
+                continue;
+            }
+            if (encoded.length() != 0) {
+                encoded.append(',');
+            }
+            encoded.append(KEYS[i]).append('=').append(counters[i]);
+        }
+        return encoded.toString();
+    }
+
+    /**
+     * @return The stored counters, or zeros when there are none. Counters of statuses or phases
+     * that do not exist anymore are dropped.
+     */
+    static long[] decode(String encoded) {
+        long[] counters = new long[COUNTER_COUNT];
+        if (encoded == null || encoded.isEmpty()) {
+            return counters;
+        }
+        String[] values = encoded.split(",");
+        try {
+            for (String value : values) {
+                int separator = value.indexOf('=');
+                Integer index = separator < 0 ? null : INDEXES.get(value.substring(0, separator));
+                if (index != null) {
+                    counters[index] = Long.parseLong(value.substring(separator + 1));
+                }
+            }
+        } catch (NumberFormatException e) {
+            return new long[COUNTER_COUNT];
+        }
+        return counters;
+    }
+}
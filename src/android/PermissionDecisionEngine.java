@@ -0,0 +1,107 @@
+package nl.klaasmaakt.cordova.notifications_permission;
+
+/**
+ * Classifies the result of a permission request. Free of Android dependencies: all
+ * inputs are packed into one int and the outcome is read from a table that is
+ * computed once, so deciding does not branch on the inputs and does not allocate.
+ */
+public final class PermissionDecisionEngine {
+
+    // Input bits
+    public static final int IN_GRANTED = 1;
+    public static final int IN_HAS_PASSED_RATIONALE = 1 << 1;
+    public static final int IN_BEFORE_CLICK_RATIONALE = 1 << 2;
+    public static final int IN_AFTER_CLICK_RATIONALE = 1 << 3;
+    public static final int IN_RATIONALE_HAS_BEEN_NEEDED_BEFORE = 1 << 4;
+    public static final int IN_PERMISSION_HAS_BEEN_GRANTED_BEFORE = 1 << 5;
+    public static final int IN_HAVE_WE_BEEN_HERE_BEFORE = 1 << 6;
+    public static final int IN_LAST_RESORT_HAS_SHOWN = 1 << 7;
+    private static final int INPUT_COUNT = 1 << 8;
+
+    // Status codes
+    public static final int STATUS_GRANTED_NEWLY_AFTER_RATIONALE = 0;
+    public static final int STATUS_GRANTED_NEWLY_WITHOUT_RATIONALE = 1;
+    public static final int STATUS_DENIED_PERMANENTLY_ALREADY = 2;
+    public static final int STATUS_DENIED_PERMANENTLY_NEWLY = 3;
+    public static final int STATUS_DENIED_NOT_PERMANENTLY_ALREADY = 4;
+    public static final int STATUS_DENIED_NOT_PERMANENTLY_NEWLY = 5;
+
+    // Output: the status code in the low bits, plus whether the last resort dialog should be shown
+    private static final int STATUS_MASK = 0x0F;
+    public static final int OUT_SHOW_LAST_RESORT = 1 << 4;
+
+    private static final byte[] TABLE = new byte[INPUT_COUNT];
+
+    static {
+        for (int input = 0; input < INPUT_COUNT; input++) {
+            TABLE[input] = (byte) decideByBranches(input);
+        }
+    }
+
+    private PermissionDecisionEngine() {
+    }
+
+    /**
+     * Decide the outcome of a permission request.
+     *
+     * @param input The IN_* bits that apply.
+     * @return The outcome: pass it to status() and showLastResort().
+     */
+    public static int decide(int input) {
+        return TABLE[input & (INPUT_COUNT - 1)];
+    }
+
+    /**
+     * @param outcome An outcome returned by decide().
+     * @return The STATUS_* code of the outcome.
+     */
+    public static int status(int outcome) {
+        return outcome & STATUS_MASK;
+    }
+
+    /**
+     * @param outcome An outcome returned by decide().
+     * @return Whether the last resort dialog should be shown.
+     */
+    public static boolean showLastResort(int outcome) {
+        return (outcome & OUT_SHOW_LAST_RESORT) != 0;
+    }
+
+    /**
+     * The branch logic the table is computed from.
+     *
+     * @param input The IN_* bits that apply.
+     * @return The outcome.
+     */
+    static int decideByBranches(int input) {
+        boolean granted = (input & IN_GRANTED) != 0;
+        boolean hasPassedRationale = (input & IN_HAS_PASSED_RATIONALE) != 0;
+        boolean beforeClickPermissionRat = (input & IN_BEFORE_CLICK_RATIONALE) != 0;
+        boolean afterClickPermissionRat = (input & IN_AFTER_CLICK_RATIONALE) != 0;
+        boolean rationaleHasBeenNeededBefore = (input & IN_RATIONALE_HAS_BEEN_NEEDED_BEFORE) != 0;
+        boolean permissionHasBeenGrantedBefore = (input & IN_PERMISSION_HAS_BEEN_GRANTED_BEFORE) != 0;
+        boolean haveWeBeenHereBefore = (input & IN_HAVE_WE_BEEN_HERE_BEFORE) != 0;
+        boolean lastResortHasShown = (input & IN_LAST_RESORT_HAS_SHOWN) != 0;
+        if (granted) {
+            return hasPassedRationale ? STATUS_GRANTED_NEWLY_AFTER_RATIONALE : STATUS_GRANTED_NEWLY_WITHOUT_RATIONALE;
+        }
+        /* Since we know te state of shouldShowRationale before and after we requestPermission
+         * we know that there is still no need to show the rationale so was already denied
+         * or the whole process hasn't started yet since the first dialog has never finished.
+         */
+        if (!beforeClickPermissionRat && !afterClickPermissionRat) {
+            /* We have had the first dialog a while ago, so this is the end */
+            if (rationaleHasBeenNeededBefore || permissionHasBeenGrantedBefore) {
+                return STATUS_DENIED_PERMANENTLY_ALREADY | (lastResortHasShown ? 0 : OUT_SHOW_LAST_RESORT);
+            }
+            return haveWeBeenHereBefore ? STATUS_DENIED_NOT_PERMANENTLY_ALREADY : STATUS_DENIED_NOT_PERMANENTLY_NEWLY;
+        }
+        if (!beforeClickPermissionRat) {
+            return haveWeBeenHereBefore ? STATUS_DENIED_NOT_PERMANENTLY_ALREADY : STATUS_DENIED_NOT_PERMANENTLY_NEWLY;
+        }
+        if (!afterClickPermissionRat) {
+            return STATUS_DENIED_PERMANENTLY_NEWLY;
+        }
+        return STATUS_DENIED_NOT_PERMANENTLY_ALREADY;
+    }
+}
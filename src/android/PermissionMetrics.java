@@ -0,0 +1,117 @@
+package nl.klaasmaakt.cordova.notifications_permission;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Lock-free recorder of the latency of each phase of a permission flow and of the number
+ * of times each status has been sent. Recording only updates preallocated atomic arrays,
+ * so it does not lock and does not allocate.
+ */
+public class PermissionMetrics {
+
+    // Phases of a permission flow
+    public static final int PHASE_ARG_PARSE = 0;
+    public static final int PHASE_THREAD_POOL_WAIT = 1;
+    public static final int PHASE_DIALOG_DISPLAY = 2;
+    public static final int PHASE_OS_PROMPT = 3;
+    public static final int PHASE_SETTINGS_ROUND_TRIP = 4;
+    private static final String[] PHASE_NAMES = {
+            "argParse",
+            "threadPoolWait",
+            "dialogDisplay",
+            "osPrompt",
+            "settingsRoundTrip"
+    };
+    private static final int PHASE_COUNT = PHASE_NAMES.length;
+
+    // Bucket i holds latencies below 2^i microseconds, the last bucket holds everything above
+    private static final int BUCKET_COUNT = 32;
+
+    private final AtomicLongArray mBuckets = new AtomicLongArray(PHASE_COUNT * BUCKET_COUNT);
+    private final AtomicLongArray mTotalNanos = new AtomicLongArray(PHASE_COUNT);
+    private final AtomicLongArray mStatusCounts = new AtomicLongArray(PermissionStatus.values().length);
+
+    /**
+     * @return The start time to pass to record().
+     */
+    public static long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Record the time passed since start for a phase.
+     *
+     * @param phase      One of the PHASE_* constants.
+     * @param startNanos The time returned by start().
+     */
+    public void record(int phase, long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        int bucket = 64 - Long.numberOfLeadingZeros(nanos >> 10);
+        if (bucket >= BUCKET_COUNT) {
+            bucket = BUCKET_COUNT - 1;
+        }
+        mBuckets.incrementAndGet(phase * BUCKET_COUNT + bucket);
+        mTotalNanos.addAndGet(phase, nanos);
+    }
+
+    /**
+     * Count a status that has been sent to JavaScript.
+     *
+     * @param status The status.
+     */
+    public void count(PermissionStatus status) {
+        mStatusCounts.incrementAndGet(status.ordinal());
+    }
+
+    /**
+     * Take a snapshot of everything that has been recorded. Phases and statuses that have
+     * not been recorded are left out, as are the empty buckets at the end of each histogram.
+     *
+     * @return The snapshot, e.g. {"phases":{"osPrompt":{"count":1,"totalNanos":1500000,"buckets":[0,0,0,0,0,0,0,0,0,0,0,1]}},"statuses":{"granted_already":3}}
+     * @throws JSONException If the snapshot cannot be built.
+     */
+    public JSONObject snapshot() throws JSONException {
+        JSONObject phases = new JSONObject();
+        for (int phase = 0; phase < PHASE_COUNT; phase++) {
+            long[] buckets = new long[BUCKET_COUNT];
+            long count = 0;
+            int used = 0;
+            for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+                buckets[bucket] = mBuckets.get(phase * BUCKET_COUNT + bucket);
+                if (buckets[bucket] != 0) {
+                    count += buckets[bucket];
+                    used = bucket + 1;
+                }
+            }
+            if (count == 0) {
+                continue;
+            }
+            JSONArray histogram = new JSONArray();
+            for (int bucket = 0; bucket < used; bucket++) {
+                histogram.put(buckets[bucket]);
+            }
+            JSONObject phaseSnapshot = new JSONObject();
+            phaseSnapshot.put("count", count);
+            phaseSnapshot.put("totalNanos", mTotalNanos.get(phase));
+            phaseSnapshot.put("buckets", histogram);
+            phases.put(PHASE_NAMES[phase], phaseSnapshot);
+        }
+        JSONObject statuses = new JSONObject();
+        for (PermissionStatus status : PermissionStatus.values()) {
+            long count = mStatusCounts.get(status.ordinal());
+            if (count != 0) {
+                statuses.put(status.value(), count);
+            }
+        }
+        JSONObject snapshot = new JSONObject();
+        snapshot.put("phases", phases);
+        snapshot.put("statuses", statuses);
+        return snapshot;
+    }
+}
@@ -0,0 +1,31 @@
+package nl.klaasmaakt.cordova.notifications_permission;
+
+import org.apache.cordova.CordovaPlugin;
+
+/**
+ * Everything NotificationsPermission needs to know from, and ask of, the OS about permissions.
+ * Going through this interface lets the plugin's flows be driven without a device.
+ */
+public interface PermissionOracle {
+
+    /**
+     * @param permission The permission to check.
+     * @return Whether the permission has been granted.
+     */
+    boolean hasPermission(String permission);
+
+    /**
+     * @param permission The permission to check.
+     * @return Whether the OS advises to show a rationale before asking.
+     */
+    boolean shouldShowRationale(String permission);
+
+    /**
+     * Ask the OS for permissions. The result is delivered to plugin.onRequestPermissionResult.
+     *
+     * @param plugin      The plugin to deliver the result to.
+     * @param requestCode The request code to deliver the result with.
+     * @param permissions The permissions to ask.
+     */
+    void requestPermissions(CordovaPlugin plugin, int requestCode, String[] permissions);
+}
@@ -0,0 +1,128 @@
+package nl.klaasmaakt.cordova.notifications_permission;
+
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+
+/**
+ * Makes sure only one permission flow runs at a time. Callers that arrive while a flow
+ * is in flight are attached to it and receive the same result. Lock free, so the bridge
+ * thread never blocks, however many callers are waiting.
+ */
+public class PermissionRequestCoalescer {
+
+    /**
+     * A waiting caller, linked to the callers that joined before it.
+     */
+    private static final class Waiter {
+        final CallbackContext callbackContext;
+        final Waiter next;
+
+        Waiter(CallbackContext callbackContext, Waiter next) {
+            this.callbackContext = callbackContext;
+            this.next = next;
+        }
+    }
+
+    /**
+     * One permission flow with its waiting callers.
+     */
+    private static final class Flow {
+        // Marks a flow that has been resolved and does not accept callers anymore
+        static final Waiter RESOLVED = new Waiter(null, null);
+        final AtomicReference<Waiter> waiters;
+
+        Flow(CallbackContext leader) {
+            waiters = new AtomicReference<>(new Waiter(leader, null));
+        }
+
+        /**
+         * @return False if the flow has been resolved in the meantime.
+         */
+        boolean attach(CallbackContext callbackContext) {
+            while (true) {
+                Waiter head = waiters.get();
+                if (head == RESOLVED) {
+                    return false;
+                }
+                if (waiters.compareAndSet(head, new Waiter(callbackContext, head))) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * @return The callers in reverse order of arrival.
+         */
+        Waiter close() {
+            return waiters.getAndSet(RESOLVED);
+        }
+    }
+
+    private final AtomicReference<Flow> mCurrentFlow = new AtomicReference<>();
+
+    /**
+     * Join the flow in flight, or start a new one.
+     *
+     * @param callbackContext The callback context of the caller.
+     * @return True if the caller has to run the flow, false if it has been attached to the flow in flight.
+     */
+    public boolean join(CallbackContext callbackContext) {
+        while (true) {
+            Flow flow = mCurrentFlow.get();
+            if (flow == null) {
+                if (mCurrentFlow.compareAndSet(null, new Flow(callbackContext))) {
+                    return true;
+                }
+            } else if (flow.attach(callbackContext)) {
+                return false;
+            }
+            // The flow has been resolved or started by another thread in the meantime: try again.
+        }
+    }
+
+    /**
+     * @return Whether a flow is in flight.
+     */
+    public boolean isInFlight() {
+        return mCurrentFlow.get() != null;
+    }
+
+    /**
+     * End the flow in flight and send the result to all its callers. Does nothing if no flow is in flight.
+     *
+     * @param result The result to send.
+     */
+    public void resolve(PluginResult result) {
+        Flow flow = mCurrentFlow.getAndSet(null);
+        if (flow == null) {
+            return;
+        }
+        send(flow.close(), result);
+    }
+
+    /**
+     * Drop the flow in flight and its callers without sending them anything, e.g. because the
+     * page that made the calls is gone. The next caller starts a new flow.
+     */
+    public void reset() {
+        Flow flow = mCurrentFlow.getAndSet(null);
+        if (flow != null) {
+            flow.close();
+        }
+    }
+
+    /**
+     * Send the result to the callers, in order of arrival.
+     */
+    private void send(Waiter waiter, PluginResult result) {
+        // Reverse the list first, so the first caller gets its result first.
+        Waiter reversed = null;
+        for (Waiter w = waiter; w != null; w = w.next) {
+            reversed = new Waiter(w.callbackContext, reversed);
+        }
+        for (Waiter w = reversed; w != null; w = w.next) {
+            w.callbackContext.sendPluginResult(result);
+        }
+    }
+}
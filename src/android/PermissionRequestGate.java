@@ -0,0 +1,87 @@
+package nl.klaasmaakt.cordova.notifications_permission;
+
+import java.util.ArrayDeque;
+
+/**
+ * Lets one permission request at a time through to the OS. Android shows one prompt at a time
+ * and answers a request made while another one is showing right away, with no results. So
+ * requests made while one is pending are held off and issued in order once its result is in,
+ * and each result is matched to the id of the request that asked for it.
+ */
+final class PermissionRequestGate {
+
+    /**
+     * A request to the OS that can be held off.
+     */
+    interface Request {
+
+        /**
+         * Ask the OS now.
+         *
+         * @return False if the request is not needed anymore and has not been made.
+         */
+        boolean issue();
+    }
+
+    private static final class Held {
+        final long id;
+        final Request request;
+
+        Held(long id, Request request) {
+            this.id = id;
+            this.request = request;
+        }
+    }
+
+    private final ArrayDeque<Held> mHeld = new ArrayDeque<>();
+    // The id of the request the OS is answering, 0 if none
+    private long mPendingId = 0;
+
+    /**
+     * Issue a request now, or hold it off while the OS is answering another one.
+     *
+     * @param id      The id to match the result with, not 0.
+     * @param request The request.
+     */
+    void submit(long id, Request request) {
+        synchronized (this) {
+            mHeld.add(new Held(id, request));
+        }
+        issueNext();
+    }
+
+    /**
+     * The OS has answered the pending request. Call issueNext() once the result has been handled.
+     *
+     * @return The id of the request the result belongs to, 0 if none was pending.
+     */
+    synchronized long complete() {
+        long id = mPendingId;
+        mPendingId = 0;
+        return id;
+    }
+
+    /**
+     * Issue the next held off request that is still needed, unless the OS is answering one.
+     */
+    void issueNext() {
+        while (true) {
+            Held next;
+            synchronized (this) {
+                if (mPendingId != 0 || mHeld.isEmpty()) {
+                    return;
+                }
+                next = mHeld.poll();
+                mPendingId = next.id;
+            }
+            if (next.request.issue()) {
+                return;
+            }
+            synchronized (this) {
+                if (mPendingId == next.id) {
+                    mPendingId = 0;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package nl.klaasmaakt.cordova.notifications_permission;
+
+/**
+ * Storage behind the PermissionStateStore. Reads happen once, writes are batched.
+ */
+public interface PermissionStateStorage {
+
+    /**
+     * Creates the storage of a permission.
+     */
+    interface Factory {
+
+        /**
+         * @param permission The permission to keep the state of, or null for POST_NOTIFICATIONS and the analytics.
+         * @return The storage.
+         */
+        PermissionStateStorage create(String permission);
+    }
+
+    /**
+     * Read all persisted flags packed into one int.
+     *
+     * @return The flags, see the FLAG_* constants of PermissionStateStore.
+     */
+    int readFlags();
+
+    /**
+     * Read the last denied status that has been sent to JavaScript.
+     *
+     * @return The status, or null if there is none.
+     */
+    String readLastDeniedStatus();
+
+    /**
+     * Write all state in one go.
+     *
+     * @param flags            The flags packed into one int.
+     * @param lastDeniedStatus The last denied status, or null to clear it.
+     * @param promptHistory    The outcomes of the last permission flows as encoded by PromptHistory, or null to leave them as they are.
+     */
+    void write(int flags, String lastDeniedStatus, String promptHistory);
+
+    /**
+     * Read the snapshot of the permission flow that was in flight.
+     *
+     * @return The snapshot, 0 if no flow was in flight.
+     */
+    int readFlowSnapshot();
+
+    /**
+     * Write the snapshot of the permission flow in flight, in one atomic operation.
+     *
+     * @param snapshot The snapshot, 0 if no flow is in flight.
+     */
+    void writeFlowSnapshot(int snapshot);
+
+    /**
+     * Read the outcomes of the last permission flows.
+     *
+     * @return The outcomes as encoded by PromptHistory, or null if there are none.
+     */
+    String readPromptHistory();
+
+    /**
+     * Read the counters of PermissionAnalytics.
+     *
+     * @return The counters as encoded by PermissionAnalytics, or null if there are none.
+     */
+    String readAnalytics();
+
+    /**
+     * Write the counters of PermissionAnalytics.
+     *
+     * @param analytics The counters as encoded by PermissionAnalytics, or null to clear them.
+     */
+    void writeAnalytics(String analytics);
+}
@@ -0,0 +1,139 @@
+package nl.klaasmaakt.cordova.notifications_permission;
+
+/**
+ * In-memory copy of the persisted permission state. All flags are loaded once into a
+ * single int, reads are served from memory and changes are written back in one batch
+ * by calling flush().
+ */
+public class PermissionStateStore {
+
+    // Bits of the packed flags
+    static final int FLAG_RATIONALE_HAS_BEEN_NEEDED_BEFORE = 1;
+    static final int FLAG_HAVE_WE_BEEN_HERE_BEFORE = 1 << 1;
+    static final int FLAG_PERMISSION_HAS_BEEN_GRANTED_BEFORE = 1 << 2;
+    static final int FLAG_LAST_RESORT_HAS_SHOWN = 1 << 3;
+
+    private final PermissionStateStorage mStorage;
+    private int mFlags;
+    private PermissionStatus mLastDeniedStatus;
+    private int mFlowSnapshot;
+    private final PromptHistory mPromptHistory;
+    // Whether there are changes that have not been written to storage yet, and whether the history is one of them
+    private boolean mDirty = false;
+    private boolean mPromptHistoryDirty = false;
+
+    public PermissionStateStore(PermissionStateStorage storage) {
+        mStorage = storage;
+        mFlags = storage.readFlags();
+        mLastDeniedStatus = PermissionStatus.fromValue(storage.readLastDeniedStatus());
+        mFlowSnapshot = storage.readFlowSnapshot();
+        mPromptHistory = PromptHistory.decode(storage.readPromptHistory());
+    }
+
+    public void saveLastResortHasShown() {
+        setFlag(FLAG_LAST_RESORT_HAS_SHOWN);
+    }
+    public boolean getLastResortHasShown() {
+        return getFlag(FLAG_LAST_RESORT_HAS_SHOWN);
+    }
+    public void saveRationaleHasBeenNeededBefore() {
+        setFlag(FLAG_RATIONALE_HAS_BEEN_NEEDED_BEFORE);
+    }
+    public boolean getRationaleHasBeenNeededBefore() {
+        return getFlag(FLAG_RATIONALE_HAS_BEEN_NEEDED_BEFORE);
+    }
+    public void saveHaveWeBeenHereBefore() {
+        setFlag(FLAG_HAVE_WE_BEEN_HERE_BEFORE);
+    }
+    public boolean getHaveWeBeenHereBefore() {
+        return getFlag(FLAG_HAVE_WE_BEEN_HERE_BEFORE);
+    }
+    public void savePermissionHasBeenGrantedBefore() {
+        setFlag(FLAG_PERMISSION_HAS_BEEN_GRANTED_BEFORE);
+    }
+    public boolean getPermissionHasBeenGrantedBefore() {
+        return getFlag(FLAG_PERMISSION_HAS_BEEN_GRANTED_BEFORE);
+    }
+    public synchronized void saveLastDeniedStatus(PermissionStatus status) {
+        if (status == mLastDeniedStatus) {
+            return;
+        }
+        mLastDeniedStatus = status;
+        mDirty = true;
+    }
+    public synchronized PermissionStatus getLastDeniedStatus() {
+        return mLastDeniedStatus;
+    }
+
+    /**
+     * Save the snapshot of the permission flow in flight. Written right away, not on flush,
+     * since it has to survive the process being killed.
+     *
+     * @param snapshot The snapshot, 0 if no flow is in flight.
+     */
+    public synchronized void saveFlowSnapshot(int snapshot) {
+        if (snapshot == mFlowSnapshot) {
+            return;
+        }
+        mFlowSnapshot = snapshot;
+        mStorage.writeFlowSnapshot(snapshot);
+    }
+    /**
+     * @return The snapshot of the permission flow that was in flight when the state was loaded or last saved.
+     */
+    public synchronized int getFlowSnapshot() {
+        return mFlowSnapshot;
+    }
+
+    /**
+     * Add the outcome of a permission flow to the history, written on flush.
+     *
+     * @param time   The time the flow ended, in milliseconds since the epoch.
+     * @param status The status the flow ended with.
+     */
+    public synchronized void recordPrompt(long time, PermissionStatus status) {
+        mPromptHistory.add(time, status);
+        mPromptHistoryDirty = true;
+        mDirty = true;
+    }
+    /**
+     * @param scheduler The scheduler to apply to the history.
+     * @param now       The current time in milliseconds since the epoch.
+     * @return Whether asking is held back at this time.
+     */
+    public synchronized boolean isCoolingDown(PromptScheduler scheduler, long now) {
+        return scheduler.isCoolingDown(mPromptHistory, now);
+    }
+    /**
+     * @return The status of the latest permission flow, or null if there is none.
+     */
+    public synchronized PermissionStatus getLastPromptStatus() {
+        return mPromptHistory.size() == 0 ? null : mPromptHistory.status(0);
+    }
+
+    /**
+     * Write all changes since the last flush to storage in one batch.
+     */
+    public synchronized void flush() {
+        if (!mDirty) {
+            return;
+        }
+        mStorage.write(
+                mFlags,
+                mLastDeniedStatus == null ? null : mLastDeniedStatus.value(),
+                mPromptHistoryDirty ? mPromptHistory.encode() : null);
+        mDirty = false;
+        mPromptHistoryDirty = false;
+    }
+
+    private synchronized void setFlag(int flag) {
+        if ((mFlags & flag) != 0) {
+            return;
+        }
+        mFlags |= flag;
+        mDirty = true;
+    }
+    private synchronized boolean getFlag(int flag) {
+        return (mFlags & flag) != 0;
+    }
+}
@@ -0,0 +1,99 @@
+package nl.klaasmaakt.cordova.notifications_permission;
+
+import org.apache.cordova.PluginResult;
+
+/**
+ * The statuses returned to JavaScript. Each value maps 1:1 onto a constant in
+ * www/NotificationsPermission.js (NOT_ANDROID is only returned by the JavaScript side).
+ * The PluginResults are built once and reused for every call.
+ */
+public enum PermissionStatus {
+    GRANTED_NEWLY_AFTER_RATIONALE("granted_newly_after_rationale"),
+    GRANTED_NEWLY_WITHOUT_RATIONALE("granted_newly_without_rationale"),
+    GRANTED_NEWLY_AFTER_SETTINGS("granted_newly_after_settings"),
+    GRANTED_ALREADY("granted_already"),
+    DENIED_PERMANENTLY_ALREADY("denied_permanently_already"),
+    DENIED_PERMANENTLY_NEWLY("denied_permanently_newly"),
+    DENIED_NOT_PERMANENTLY_ALREADY("denied_not_permanently_already"),
+    DENIED_NOT_PERMANENTLY_NEWLY("denied_not_permanently_newly"),
+    DENIED_PERMANENTLY_ALREADY_AFTER_SETTINGS("denied_permanently_already_after_settings"),
+    DENIED_THROUGH_RATIONALE_DIALOG("denied_through_rationale_dialog"),
+    DENIED_THROUGH_LAST_RESORT_DIALOG("denied_through_last_resort_dialog"),
+    NOT_NEEDED("not_needed"),
+    NOT_DETERMINED("not_determined"),
+    TIMEOUT("timeout"),
+    CANCELLED("cancelled"),
+    ERROR("error");
+
+    private final String mValue;
+    private final PluginResult mResult;
+    private final PluginResult mKeepCallbackResult;
+
+    PermissionStatus(String value) {
+        mValue = value;
+        mResult = new FixedPluginResult(value, false);
+        mKeepCallbackResult = new FixedPluginResult(value, true);
+    }
+
+    /**
+     * @return The value as known in JavaScript.
+     */
+    public String value() {
+        return mValue;
+    }
+
+    /**
+     * @return The shared result that ends the callback.
+     */
+    public PluginResult result() {
+        return mResult;
+    }
+
+    /**
+     * @return The shared result that keeps the callback open.
+     */
+    public PluginResult keepCallbackResult() {
+        return mKeepCallbackResult;
+    }
+
+    public boolean isGranted() {
+        return mValue.startsWith("granted_");
+    }
+
+    public boolean isDenied() {
+        return mValue.startsWith("denied_");
+    }
+
+    /**
+     * @param value The value as known in JavaScript.
+     * @return The status, or null if the value is unknown.
+     */
+    public static PermissionStatus fromValue(String value) {
+        if (value == null) {
+            return null;
+        }
+        for (PermissionStatus status : values()) {
+            if (status.mValue.equals(value)) {
+                return status;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A PluginResult of which the keep callback flag cannot be changed, so it can be shared.
+     */
+    private static final class FixedPluginResult extends PluginResult {
+        FixedPluginResult(String value, boolean keepCallback) {
+            super(PluginResult.Status.OK, value);
+            super.setKeepCallback(keepCallback);
+        }
+
+        @Override
+        public void setKeepCallback(boolean keepCallback) {
+            if (keepCallback != getKeepCallback()) {
+                throw new UnsupportedOperationException("Shared PluginResult cannot be changed");
+            }
+        }
+    }
+}
@@ -1,10 +1,15 @@
 package nl.klaasmaakt.cordova.notifications_permission;
 
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 import androidx.appcompat.app.AlertDialog;
 import androidx.fragment.app.DialogFragment;
 import android.app.Dialog;
+import android.content.Context;
 import android.os.Bundle;
+import android.util.Log;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A DialogFragment to show a rationale dialog for permissions if needed.
@@ -20,44 +25,165 @@ public class PermissionsDialogFragment extends DialogFragment {
     private static final String KEY_POSITIVE_BUTTON = "positive_button";
     private static final String KEY_NEGATIVE_BUTTON = "negative_button";
     private static final String KEY_THEME = "theme";
+    private static final String KEY_CALLBACK_ID = "callback_id";
+    private static final String KEY_DISPLAY_START = "display_start";
 
-    // ClickCallback instance to handle positive and negative button clicks
-    private static ClickCallback mClickCallback;
+    // Dialogs built up front by prepare(), by callback id. Used by every fragment that shows the same content in the same activity.
+    // A dialog keeps its activity, the plugin releases it with clearPrepared() in onDestroy.
+    private static final Map<String, PreparedDialog> sPrepared = new ConcurrentHashMap<>();
+
+    // Whether Android has recreated this fragment from its saved state, when the display has not been timed
+    private boolean mRecreated;
 
     /**
      * Create a new instance of PermissionsDialogFragment with the given arguments.
      *
+     * @param config            The content of the dialog.
+     * @param callbackId        The id the ClickCallback to handle button clicks is registered under in ClickCallbackRegistry.
+     * @param displayStartNanos The time showing the dialog started, from PermissionMetrics.start().
+     * @return A new instance of PermissionsDialogFragment.
+     */
+    static PermissionsDialogFragment newInstance(
+            DialogConfig config,
+            String callbackId,
+            long displayStartNanos) {
+        // Create a new instance of the fragment
+        PermissionsDialogFragment f = new PermissionsDialogFragment();
+
+        // Supply input as arguments, copied from the shared ones as the start time is of this dialog only
+        Bundle args = new Bundle(config.arguments(callbackId));
+        args.putLong(KEY_DISPLAY_START, displayStartNanos);
+        f.setArguments(args);
+
+        return f;
+    }
+
+    /**
+     * A dialog built up front, with the activity and the arguments it has been built for.
+     */
+    private static final class PreparedDialog {
+        final Context context;
+        final Bundle arguments;
+        final AlertDialog dialog;
+
+        PreparedDialog(Context context, Bundle arguments, AlertDialog dialog) {
+            this.context = context;
+            this.arguments = arguments;
+            this.dialog = dialog;
+        }
+    }
+
+    /**
+     * Build the dialog now, on the UI thread, so the fragments that show the same content later on
+     * do not have to. Creating the dialog inflates and lays out its views, which is what makes the
+     * first frame of a dialog slow on low-end devices; the builder itself is cheap.
+     *
+     * @param context   The activity the dialog will be shown in.
+     * @param arguments The arguments the fragments will be created with.
+     */
+    static void prepare(Context context, Bundle arguments) {
+        AlertDialog dialog = build(context, arguments);
+        dialog.create();
+        sPrepared.put(arguments.getString(KEY_CALLBACK_ID), new PreparedDialog(context, arguments, dialog));
+    }
+
+    /**
+     * Drop the dialog prepared for a callback id in an activity, so it does not keep that activity.
+     * A dialog prepared in another activity, by the plugin instance that has replaced this one, is kept.
+     *
+     * @param callbackId The id the ClickCallback is registered under in ClickCallbackRegistry.
+     * @param context    The activity the dialog has been prepared in.
+     */
+    static void clearPrepared(String callbackId, Context context) {
+        PreparedDialog prepared = sPrepared.get(callbackId);
+        if (prepared != null && prepared.context == context) {
+            sPrepared.remove(callbackId, prepared);
+        }
+    }
+
+    /**
+     * @param callbackId The id the ClickCallback is registered under in ClickCallbackRegistry.
+     * @return Whether a dialog is prepared for the callback id.
+     */
+    @VisibleForTesting
+    static boolean isPrepared(String callbackId) {
+        return sPrepared.containsKey(callbackId);
+    }
+
+    /**
+     * @param context   The activity to show the dialog in.
+     * @param arguments The arguments of the fragment.
+     * @return The prepared dialog for exactly this content and activity if it is not showing, else null.
+     */
+    private static AlertDialog preparedDialog(Context context, Bundle arguments) {
+        PreparedDialog prepared = sPrepared.get(arguments.getString(KEY_CALLBACK_ID));
+        if (prepared == null
+                || prepared.context != context
+                || prepared.dialog.isShowing()
+                || !sameContent(prepared.arguments, arguments)) {
+            return null;
+        }
+        return prepared.dialog;
+    }
+
+    private static boolean sameContent(Bundle a, Bundle b) {
+        return a.getInt(KEY_THEME) == b.getInt(KEY_THEME)
+                && equal(a.getString(KEY_TITLE), b.getString(KEY_TITLE))
+                && equal(a.getString(KEY_MSG), b.getString(KEY_MSG))
+                && equal(a.getString(KEY_POSITIVE_BUTTON), b.getString(KEY_POSITIVE_BUTTON))
+                && equal(a.getString(KEY_NEGATIVE_BUTTON), b.getString(KEY_NEGATIVE_BUTTON));
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * Create an AlertDialog with the specified theme, message and buttons. The buttons route
+     * their clicks by the callback id, so the dialog can be shown by any fragment.
+     */
+    private static AlertDialog build(Context context, Bundle args) {
+        String callbackId = args.getString(KEY_CALLBACK_ID);
+        return new AlertDialog.Builder(context, args.getInt(KEY_THEME))
+                .setMessage(args.getString(KEY_MSG))
+                .setPositiveButton(args.getString(KEY_POSITIVE_BUTTON), (dialog, which) -> {
+                    // Call the positive button click callback
+                    onClick(callbackId, ClickCallback.Status.POSITIVE);
+                })
+                .setNegativeButton(args.getString(KEY_NEGATIVE_BUTTON), (dialog, which) -> {
+                    // Call the negative button click callback
+                    onClick(callbackId, ClickCallback.Status.NEGATIVE);
+                })
+                .setTitle(args.getString(KEY_TITLE))
+                .create();
+    }
+
+    /**
+     * Build the arguments for a PermissionsDialogFragment.
+     *
      * @param title   The title to be displayed in the dialog.
      * @param msg   The message to be displayed in the dialog.
      * @param positiveButton The text for the positive button.
      * @param negativeButton The text for the negative button.
-     * @param clickCallback  The callback to handle button clicks.
      * @param theme           The theme resource ID for the dialog.
-     * @return A new instance of PermissionsDialogFragment.
+     * @param callbackId     The id the ClickCallback is registered under in ClickCallbackRegistry.
+     * @return The arguments.
      */
-    static PermissionsDialogFragment newInstance(
+    static Bundle newArguments(
             String title,
             String msg,
             String positiveButton,
             String negativeButton,
             int theme,
-            ClickCallback clickCallback) {
-        // Set the ClickCallback instance for handling button clicks
-        mClickCallback = clickCallback;
-
-        // Create a new instance of the fragment
-        PermissionsDialogFragment f = new PermissionsDialogFragment();
-
-        // Supply input as arguments
+            String callbackId) {
         Bundle args = new Bundle();
         args.putString(KEY_TITLE, title);
         args.putString(KEY_MSG, msg);
         args.putString(KEY_POSITIVE_BUTTON, positiveButton);
         args.putString(KEY_NEGATIVE_BUTTON, negativeButton);
         args.putInt(KEY_THEME, theme);
-        f.setArguments(args);
-
-        return f;
+        args.putString(KEY_CALLBACK_ID, callbackId);
+        return args;
     }
 
     /**
@@ -70,32 +196,55 @@ public class PermissionsDialogFragment extends DialogFragment {
     public Dialog onCreateDialog(@Nullable Bundle savedInstanceState) {
         // Retrieve arguments passed to the fragment
         Bundle args = getArguments();
+        mRecreated = savedInstanceState != null;
 
         // Ensure the dialog is not cancelable by tapping outside it
         setCancelable(false);
 
-        // Create an AlertDialog with the specified theme and message
-        return new AlertDialog.Builder(requireContext(), args.getInt(KEY_THEME))
-                .setMessage(args.getString(KEY_MSG))
-                .setPositiveButton(args.getString(KEY_POSITIVE_BUTTON), (dialog, which) -> {
-                    // Call the positive button click callback
-                    mClickCallback.onClick(ClickCallback.Status.POSITIVE);
-                })
-                .setNegativeButton(args.getString(KEY_NEGATIVE_BUTTON), (dialog, which) -> {
-                    // Call the negative button click callback
-                    mClickCallback.onClick(ClickCallback.Status.NEGATIVE);
-                })
-                .setTitle(args.getString(KEY_TITLE))
-                .create();
+        // Reuse the dialog built by prewarmDialogs, else create an AlertDialog with the specified theme and message
+        AlertDialog prepared = preparedDialog(requireContext(), args);
+        if (prepared != null) {
+            return prepared;
+        }
+        return build(requireContext(), args);
     }
 
     /**
-     * Called when the fragment is being destroyed, ensuring proper detachment.
+     * Called when the dialog is on screen. The first time, the time it took to show it is reported.
      */
     @Override
-    public void onDestroy() {
-        super.onDestroy();
-        // Ensure proper detachment by setting ClickCallback to null
-        mClickCallback = null;
+    public void onStart() {
+        super.onStart();
+        Bundle args = requireArguments();
+        if (!args.containsKey(KEY_DISPLAY_START)) {
+            return;
+        }
+        long displayStart = args.getLong(KEY_DISPLAY_START);
+        // Once, not again when the activity comes back to the foreground
+        args.remove(KEY_DISPLAY_START);
+        if (mRecreated) {
+            // The start time is of a plugin instance that may be gone, maybe of another process
+            return;
+        }
+        ClickCallback clickCallback = ClickCallbackRegistry.get(args.getString(KEY_CALLBACK_ID));
+        if (clickCallback != null) {
+            clickCallback.onDisplayed(displayStart);
+        }
+    }
+
+    /**
+     * Route a click to the callback registered for this dialog.
+     *
+     * @param callbackId The id the ClickCallback is registered under in ClickCallbackRegistry.
+     * @param status     The status of the click action (POSITIVE or NEGATIVE).
+     */
+    private static void onClick(String callbackId, ClickCallback.Status status) {
+        ClickCallback clickCallback = ClickCallbackRegistry.get(callbackId);
+        if (clickCallback == null) {
+            // The plugin that showed this dialog is gone, nobody is waiting for the click.
+            Log.w(TAG, "No click callback registered for " + callbackId);
+            return;
+        }
+        clickCallback.onClick(status);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,104 @@
+package nl.klaasmaakt.cordova.notifications_permission;
+
+/**
+ * The last outcomes of permission flows with the time they ended, kept in a ring buffer
+ * of fixed size so memory and storage stay constant however often the permission is asked.
+ * Not thread safe, PermissionStateStore guards it.
+ */
+public final class PromptHistory {
+
+    // Number of outcomes kept, the oldest one is overwritten when full
+    public static final int CAPACITY = 8;
+
+    private final long[] mTimes = new long[CAPACITY];
+    private final PermissionStatus[] mStatuses = new PermissionStatus[CAPACITY];
+    // Index of the next entry to write
+    private int mHead = 0;
+    private int mSize = 0;
+
+    /**
+     * Add an outcome, overwriting the oldest one when the buffer is full.
+     *
+     * @param time   The time the flow ended, in milliseconds since the epoch.
+     * @param status The status the flow ended with.
+     */
+    public void add(long time, PermissionStatus status) {
+        mTimes[mHead] = time;
+        mStatuses[mHead] = status;
+        mHead = (mHead + 1) % CAPACITY;
+        if (mSize < CAPACITY) {
+            mSize++;
+        }
+    }
+
+    /**
+     * @return The number of outcomes kept.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * @param age 0 for the latest outcome, 1 for the one before, up to size() - 1.
+     * @return The time the outcome was added.
+     */
+    public long time(int age) {
+        return mTimes[index(age)];
+    }
+
+    /**
+     * @param age 0 for the latest outcome, 1 for the one before, up to size() - 1.
+     * @return The status of the outcome.
+     */
+    public PermissionStatus status(int age) {
+        return mStatuses[index(age)];
+    }
+
+    private int index(int age) {
+        if (age < 0 || age >= mSize) {
+            throw new IndexOutOfBoundsException("No outcome of age " + age);
+        }
+        return (mHead - 1 - age + CAPACITY) % CAPACITY;
+    }
+
+    /**
+     * @return The outcomes from oldest to latest as "time:status" separated by ",", to be read by decode().
+     */
+    public String encode() {
+        StringBuilder encoded = new StringBuilder();
+        for (int age = mSize - 1; age >= 0; age--) {
+            if (encoded.length() != 0) {
+                encoded.append(',');
+            }
+            encoded.append(time(age)).append(':').append(status(age).value());
+        }
+        return encoded.toString();
+    }
+
+    /**
+     * @param encoded The outcomes as returned by encode(), or null.
+     * @return The history. Entries that cannot be read are skipped.
+     */
+    public static PromptHistory decode(String encoded) {
+        PromptHistory history = new PromptHistory();
+        if (encoded == null || encoded.isEmpty()) {
+            return history;
+        }
+        for (String entry : encoded.split(",")) {
+            int separator = entry.indexOf(':');
+            if (separator <= 0) {
+                continue;
+            }
+            PermissionStatus status = PermissionStatus.fromValue(entry.substring(separator + 1));
+            if (status == null) {
+                continue;
+            }
+            try {
+                history.add(Long.parseLong(entry.substring(0, separator)), status);
+            } catch (NumberFormatException e) {
+                // Skip the entry
+            }
+        }
+        return history;
+    }
+}
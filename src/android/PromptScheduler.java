@@ -0,0 +1,102 @@
+package nl.klaasmaakt.cordova.notifications_permission;
+
+import java.util.EnumSet;
+import java.util.Set;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Decides whether the permission may be asked again, based on the PromptHistory. After every
+ * consecutive outcome with a backoff status the cool-down window grows by the backoff factor,
+ * up to the maximum. While a window is active the user is not asked. Immutable.
+ */
+public final class PromptScheduler {
+
+    // Does not hold back any request, the behaviour when no backoff has been configured
+    public static final PromptScheduler DISABLED = new PromptScheduler(0, 1, 0, EnumSet.noneOf(PermissionStatus.class));
+
+    private final long mCooldownMs;
+    private final double mBackoffFactor;
+    private final long mMaxCooldownMs;
+    private final Set<PermissionStatus> mBackoffStatuses;
+
+    /**
+     * @param cooldownMs      The window after the first outcome with a backoff status, 0 to disable.
+     * @param backoffFactor   The window is multiplied by this for every further consecutive outcome, at least 1.
+     * @param maxCooldownMs   The longest window.
+     * @param backoffStatuses The statuses that start or grow a window.
+     */
+    public PromptScheduler(long cooldownMs, double backoffFactor, long maxCooldownMs, Set<PermissionStatus> backoffStatuses) {
+        mCooldownMs = cooldownMs;
+        mBackoffFactor = backoffFactor;
+        mMaxCooldownMs = maxCooldownMs;
+        mBackoffStatuses = EnumSet.noneOf(PermissionStatus.class);
+        mBackoffStatuses.addAll(backoffStatuses);
+    }
+
+    /**
+     * Read the scheduler from the options passed to configureBackoff in www/NotificationsPermission.js:
+     * {cooldownMs, backoffFactor, maxCooldownMs, statuses}. Only cooldownMs is required.
+     *
+     * @param options The options.
+     * @return The scheduler.
+     * @throws JSONException If an option is missing, has the wrong type or is out of range.
+     */
+    public static PromptScheduler fromJson(JSONObject options) throws JSONException {
+        long cooldownMs = options.getLong("cooldownMs");
+        double backoffFactor = options.optDouble("backoffFactor", 2);
+        long maxCooldownMs = options.optLong("maxCooldownMs", cooldownMs);
+        if (cooldownMs < 0 || backoffFactor < 1 || maxCooldownMs < cooldownMs) {
+            throw new JSONException("Expected 0 <= cooldownMs <= maxCooldownMs and backoffFactor >= 1");
+        }
+        Set<PermissionStatus> statuses;
+        JSONArray values = options.optJSONArray("statuses");
+        if (values == null) {
+            statuses = EnumSet.of(
+                    PermissionStatus.DENIED_NOT_PERMANENTLY_ALREADY,
+                    PermissionStatus.DENIED_NOT_PERMANENTLY_NEWLY,
+                    PermissionStatus.DENIED_THROUGH_RATIONALE_DIALOG,
+                    PermissionStatus.DENIED_THROUGH_LAST_RESORT_DIALOG);
+        } else {
+            statuses = EnumSet.noneOf(PermissionStatus.class);
+            for (int i = 0; i < values.length(); i++) {
+                PermissionStatus status = PermissionStatus.fromValue(values.getString(i));
+                if (status == null) {
+                    throw new JSONException("Unknown status " + values.getString(i));
+                }
+                statuses.add(status);
+            }
+        }
+        return new PromptScheduler(cooldownMs, backoffFactor, maxCooldownMs, statuses);
+    }
+
+    /**
+     * @param history The outcomes of the last flows.
+     * @return The time the window that holds back asking ends, in milliseconds since the epoch. 0 if there is none.
+     */
+    public long cooldownEnd(PromptHistory history) {
+        if (mCooldownMs == 0) {
+            return 0;
+        }
+        int consecutive = 0;
+        while (consecutive < history.size() && mBackoffStatuses.contains(history.status(consecutive))) {
+            consecutive++;
+        }
+        if (consecutive == 0) {
+            return 0;
+        }
+        double window = mCooldownMs * Math.pow(mBackoffFactor, consecutive - 1);
+        return history.time(0) + (long) Math.min(window, mMaxCooldownMs);
+    }
+
+    /**
+     * @param history The outcomes of the last flows.
+     * @param now     The current time in milliseconds since the epoch.
+     * @return Whether asking is held back at this time.
+     */
+    public boolean isCoolingDown(PromptHistory history, long now) {
+        // A clock that has been turned back does not hold back asking forever
+        return history.size() != 0 && now >= history.time(0) && now < cooldownEnd(history);
+    }
+}
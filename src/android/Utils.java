@@ -3,48 +3,100 @@ package nl.klaasmaakt.cordova.notifications_permission;
 import android.content.Context;
 import android.content.SharedPreferences;
 
-public class Utils {
+public class Utils implements PermissionStateStorage {
 
     private static final String SHARED_PREFERENCES_KEY = "shared_preferences_key";
     private static final String SP_RATIONALE_HAS_BEEN_NEEDED_BEFORE_KEY = "rationale_has_been_needed_before";
     private static final String SP_WE_HAVE_BEEN_HERE_BEFORE_KEY = "we_have_been_here_before";
     private static final String SP_PERMISSION_HAS_BEEN_GRANTED_BEFORE_KEY = "permission_has_been_granted_before";
     private static final String SP_LAST_RESORT_HAS_SHOWN_KEY = "last_resort_has_shown";
+    private static final String SP_LAST_DENIED_STATUS_KEY = "last_denied_status";
+    private static final String SP_FLOW_SNAPSHOT_KEY = "flow_snapshot";
+    private static final String SP_PROMPT_HISTORY_KEY = "prompt_history";
+    private static final String SP_ANALYTICS_KEY = "analytics";
 
     private final SharedPreferences sharedPreferences;
+    // Prefix of the keys, so every permission has its own flags
+    private final String keyPrefix;
 
     public Utils(Context context) {
-        sharedPreferences = context.getSharedPreferences(SHARED_PREFERENCES_KEY, Context.MODE_PRIVATE);
+        this(context, null);
     }
 
-    public void saveLastResortHasShown() {
-        setSavedPref(SP_LAST_RESORT_HAS_SHOWN_KEY);
+    /**
+     * @param context    The context to get the shared preferences from.
+     * @param permission The permission the flags are kept for, or null for POST_NOTIFICATIONS.
+     */
+    public Utils(Context context, String permission) {
+        sharedPreferences = context.getSharedPreferences(SHARED_PREFERENCES_KEY, Context.MODE_PRIVATE);
+        keyPrefix = permission == null ? "" : permission + ":";
     }
-    public boolean getLastResortHasShown() {
-        return getSavedPref(SP_LAST_RESORT_HAS_SHOWN_KEY);
+
+    @Override
+    public int readFlags() {
+        int flags = 0;
+        if (sharedPreferences.getBoolean(keyPrefix + SP_RATIONALE_HAS_BEEN_NEEDED_BEFORE_KEY, false)) {
+            flags |= PermissionStateStore.FLAG_RATIONALE_HAS_BEEN_NEEDED_BEFORE;
+        }
+        if (sharedPreferences.getBoolean(keyPrefix + SP_WE_HAVE_BEEN_HERE_BEFORE_KEY, false)) {
+            flags |= PermissionStateStore.FLAG_HAVE_WE_BEEN_HERE_BEFORE;
+        }
+        if (sharedPreferences.getBoolean(keyPrefix + SP_PERMISSION_HAS_BEEN_GRANTED_BEFORE_KEY, false)) {
+            flags |= PermissionStateStore.FLAG_PERMISSION_HAS_BEEN_GRANTED_BEFORE;
+        }
+        if (sharedPreferences.getBoolean(keyPrefix + SP_LAST_RESORT_HAS_SHOWN_KEY, false)) {
+            flags |= PermissionStateStore.FLAG_LAST_RESORT_HAS_SHOWN;
+        }
+        return flags;
     }
-    public void saveRationaleHasBeenNeededBefore() {
-        setSavedPref(SP_RATIONALE_HAS_BEEN_NEEDED_BEFORE_KEY);
+    @Override
+    public String readLastDeniedStatus() {
+        return sharedPreferences.getString(keyPrefix + SP_LAST_DENIED_STATUS_KEY, null);
     }
-    public boolean getRationaleHasBeenNeededBefore() {
-        return getSavedPref(SP_RATIONALE_HAS_BEEN_NEEDED_BEFORE_KEY);
+    @Override
+    public void write(int flags, String lastDeniedStatus, String promptHistory) {
+        SharedPreferences.Editor editor = sharedPreferences.edit();
+        putFlag(editor, flags, PermissionStateStore.FLAG_RATIONALE_HAS_BEEN_NEEDED_BEFORE, SP_RATIONALE_HAS_BEEN_NEEDED_BEFORE_KEY);
+        putFlag(editor, flags, PermissionStateStore.FLAG_HAVE_WE_BEEN_HERE_BEFORE, SP_WE_HAVE_BEEN_HERE_BEFORE_KEY);
+        putFlag(editor, flags, PermissionStateStore.FLAG_PERMISSION_HAS_BEEN_GRANTED_BEFORE, SP_PERMISSION_HAS_BEEN_GRANTED_BEFORE_KEY);
+        putFlag(editor, flags, PermissionStateStore.FLAG_LAST_RESORT_HAS_SHOWN, SP_LAST_RESORT_HAS_SHOWN_KEY);
+        if (lastDeniedStatus == null) {
+            editor.remove(keyPrefix + SP_LAST_DENIED_STATUS_KEY);
+        } else {
+            editor.putString(keyPrefix + SP_LAST_DENIED_STATUS_KEY, lastDeniedStatus);
+        }
+        if (promptHistory != null) {
+            editor.putString(keyPrefix + SP_PROMPT_HISTORY_KEY, promptHistory);
+        }
+        editor.apply();
     }
-    public void saveHaveWeBeenHereBefore() {
-        setSavedPref(SP_WE_HAVE_BEEN_HERE_BEFORE_KEY);
+    @Override
+    public int readFlowSnapshot() {
+        return sharedPreferences.getInt(keyPrefix + SP_FLOW_SNAPSHOT_KEY, 0);
     }
-    public boolean getHaveWeBeenHereBefore() {
-        return getSavedPref(SP_WE_HAVE_BEEN_HERE_BEFORE_KEY);
+    @Override
+    public void writeFlowSnapshot(int snapshot) {
+        sharedPreferences.edit().putInt(keyPrefix + SP_FLOW_SNAPSHOT_KEY, snapshot).apply();
     }
-    public void savePermissionHasBeenGrantedBefore() {
-        setSavedPref(SP_PERMISSION_HAS_BEEN_GRANTED_BEFORE_KEY);
+    @Override
+    public String readPromptHistory() {
+        return sharedPreferences.getString(keyPrefix + SP_PROMPT_HISTORY_KEY, null);
     }
-    public boolean getPermissionHasBeenGrantedBefore() {
-        return getSavedPref(SP_PERMISSION_HAS_BEEN_GRANTED_BEFORE_KEY);
+    @Override
+    public String readAnalytics() {
+        return sharedPreferences.getString(keyPrefix + SP_ANALYTICS_KEY, null);
     }
-    private void setSavedPref(String pref) {
-        sharedPreferences.edit().putBoolean(pref, true).apply();
+    @Override
+    public void writeAnalytics(String analytics) {
+        if (analytics == null) {
+            sharedPreferences.edit().remove(keyPrefix + SP_ANALYTICS_KEY).apply();
+        } else {
+            sharedPreferences.edit().putString(keyPrefix + SP_ANALYTICS_KEY, analytics).apply();
+        }
     }
-    private boolean getSavedPref(String pref) {
-        return sharedPreferences.getBoolean(pref, false);
+    private void putFlag(SharedPreferences.Editor editor, int flags, int flag, String pref) {
+        if ((flags & flag) != 0) {
+            editor.putBoolean(keyPrefix + pref, true);
+        }
     }
 }
@@ -0,0 +1,61 @@
+package nl.klaasmaakt.cordova.notifications_permission;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The table lookup of PermissionDecisionEngine against the branches it is computed from, on
+ * inputs in random order so the branch predictor cannot learn them. Run with -prof gc to see
+ * that neither allocates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecisionEngineBenchmark {
+
+    private static final int INPUTS = 1024;
+
+    private final int[] mInputs = new int[INPUTS];
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < INPUTS; i++) {
+            mInputs[i] = random.nextInt(256);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUTS)
+    public int table() {
+        int sum = 0;
+        for (int input : mInputs) {
+            sum += PermissionDecisionEngine.decide(input);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUTS)
+    public int branches() {
+        int sum = 0;
+        for (int input : mInputs) {
+            sum += PermissionDecisionEngine.decideByBranches(input);
+        }
+        return sum;
+    }
+}
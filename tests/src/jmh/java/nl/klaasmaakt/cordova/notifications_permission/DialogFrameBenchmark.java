@@ -0,0 +1,57 @@
+package nl.klaasmaakt.cordova.notifications_permission;
+
+import androidx.appcompat.app.AlertDialog;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The time from asking until the rationale dialog is on screen, with and without prewarmDialogs.
+ * Sampled, so the percentiles can be held against the 16 ms of a frame. The fakes do not inflate
+ * views, so on the JVM this shows what the plugin itself adds to the frame; building the dialog,
+ * which pre-warm takes out of the frame, only costs its real time on a device.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DialogFrameBenchmark {
+
+    @Param({"false", "true"})
+    public boolean prewarm;
+
+    private PluginHarness mHarness;
+
+    @Setup
+    public void setUp() {
+        mHarness = new PluginHarness();
+        // Deny once, so every ask shows the rationale dialog
+        mHarness.ask();
+        mHarness.os.deny();
+        if (prewarm) {
+            mHarness.execute("prewarmDialogs", PluginHarness.dialogArgs());
+        }
+    }
+
+    /**
+     * Ask until the rationale dialog is on screen, then deny through it.
+     */
+    @Benchmark
+    public AlertDialog showRationale() {
+        mHarness.ask();
+        AlertDialog dialog = mHarness.dialog();
+        mHarness.clickNegative();
+        return dialog;
+    }
+}
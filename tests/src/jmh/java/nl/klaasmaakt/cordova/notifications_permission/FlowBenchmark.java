@@ -0,0 +1,67 @@
+package nl.klaasmaakt.cordova.notifications_permission;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Replays complete permission flows through the real plugin, on the harness of the JUnit suites.
+ * Run with -prof gc to see the allocation per flow.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FlowBenchmark {
+
+    private PluginHarness mHarness;
+
+    @Setup
+    public void setUp() {
+        mHarness = new PluginHarness();
+    }
+
+    /**
+     * Ask without rationale and grant.
+     */
+    @Benchmark
+    public String firstAskGranted() {
+        mHarness.os.revokeInSettings(PluginHarness.PERMISSION);
+        RecordingCallbackContext callback = mHarness.ask();
+        mHarness.os.grant();
+        return callback.onlyMessage();
+    }
+
+    /**
+     * Deny, then ask again through the rationale dialog and grant: two flows.
+     */
+    @Benchmark
+    public String deniedThenRationaleGranted() {
+        mHarness.os.revokeInSettings(PluginHarness.PERMISSION);
+        mHarness.ask();
+        mHarness.os.deny();
+        RecordingCallbackContext callback = mHarness.ask();
+        mHarness.clickPositive();
+        mHarness.os.grant();
+        return callback.onlyMessage();
+    }
+
+    /**
+     * Ask while the permission has been granted, which ends without a prompt.
+     */
+    @Benchmark
+    public String grantedAlready() {
+        mHarness.os.grantInSettings(PluginHarness.PERMISSION);
+        return mHarness.ask().onlyMessage();
+    }
+}
@@ -0,0 +1,53 @@
+package nl.klaasmaakt.cordova.notifications_permission;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Recording into PermissionMetrics, alone and from several threads at once. Run with -prof gc:
+ * recording should not allocate, gc.alloc.rate.norm is 0 B/op.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+
+    private final PermissionMetrics mMetrics = new PermissionMetrics();
+
+    /**
+     * The dialog display phase, as a fragment records it once it is on screen.
+     */
+    @Benchmark
+    public void record() {
+        mMetrics.record(PermissionMetrics.PHASE_DIALOG_DISPLAY, PermissionMetrics.start());
+    }
+
+    /**
+     * The same, from the bridge thread, the UI thread and the thread pool at once.
+     */
+    @Benchmark
+    @Threads(4)
+    public void recordContended() {
+        mMetrics.record(PermissionMetrics.PHASE_DIALOG_DISPLAY, PermissionMetrics.start());
+    }
+
+    /**
+     * Counting a status that has been sent.
+     */
+    @Benchmark
+    public void count() {
+        mMetrics.count(PermissionStatus.GRANTED_ALREADY);
+    }
+}
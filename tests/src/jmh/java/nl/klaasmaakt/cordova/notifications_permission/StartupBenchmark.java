@@ -0,0 +1,94 @@
+package nl.klaasmaakt.cordova.notifications_permission;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.apache.cordova.PluginResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The startup of the plugin: constructing it, pluginInitialize and the first checkStatus, which
+ * needs the state of which loading the storage takes loadMillis. Lazy loads the state on the
+ * thread pool, as the plugin does; eager runs the thread pool inline, so the state is loaded
+ * within pluginInitialize as the plugin did before it loaded the state lazily.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StartupBenchmark {
+
+    @Param({"lazy", "eager"})
+    public String loading;
+
+    @Param({"0", "20"})
+    public long loadMillis;
+
+    private ExecutorService mThreadPool;
+    private RecordingCallbackContext mFirstCall;
+
+    @Setup
+    public void startThreadPool() {
+        mThreadPool = "eager".equals(loading) ? FakeCordova.directExecutor() : Executors.newCachedThreadPool();
+    }
+
+    @TearDown
+    public void stopThreadPool() throws InterruptedException {
+        mThreadPool.shutdown();
+        mThreadPool.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Lets the state of the plugin of the last invocation finish loading, so loaders do not pile up.
+     */
+    @TearDown(Level.Invocation)
+    public void awaitFirstResult() {
+        while (mFirstCall.lastResult() == null) {
+            Thread.yield();
+        }
+    }
+
+    private static PluginResult await(RecordingCallbackContext callbackContext) {
+        PluginResult result;
+        do {
+            // Spins, a sleep or a park would measure the wake-up instead
+            result = callbackContext.lastResult();
+        } while (result == null);
+        return result;
+    }
+
+    /**
+     * The time the threads that start the plugin and make the first call are held up, on a device
+     * the UI thread and the bridge thread. The result of the call may arrive later.
+     */
+    @Benchmark
+    public RecordingCallbackContext startAndCall() {
+        PluginHarness harness = new PluginHarness(mThreadPool, loadMillis);
+        mFirstCall = harness.execute("checkStatus");
+        return mFirstCall;
+    }
+
+    /**
+     * The time from starting the plugin until the result of the first call has arrived.
+     */
+    @Benchmark
+    public PluginResult startUntilFirstResult() {
+        PluginHarness harness = new PluginHarness(mThreadPool, loadMillis);
+        mFirstCall = harness.execute("checkStatus");
+        return await(mFirstCall);
+    }
+}
@@ -0,0 +1,65 @@
+package nl.klaasmaakt.cordova.notifications_permission;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.apache.cordova.PluginResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The latency of asking for the status while the permission has been granted, from the call on the
+ * bridge thread until the result has been sent: checkStatus answers right away, maybeAskPermission
+ * parses the dialog arguments and answers from the thread pool, here a real one.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatusBenchmark {
+
+    private ExecutorService mThreadPool;
+    private PluginHarness mHarness;
+
+    @Setup
+    public void setUp() {
+        mThreadPool = Executors.newFixedThreadPool(1);
+        mHarness = new PluginHarness(mThreadPool);
+        mHarness.os.grantInSettings(PluginHarness.PERMISSION);
+    }
+
+    @TearDown
+    public void tearDown() {
+        mThreadPool.shutdownNow();
+    }
+
+    private static PluginResult await(RecordingCallbackContext callbackContext) {
+        PluginResult result;
+        do {
+            // Spins, a sleep or a park would measure the wake-up instead
+            result = callbackContext.lastResult();
+        } while (result == null);
+        return result;
+    }
+
+    @Benchmark
+    public PluginResult checkStatus() {
+        return await(mHarness.execute("checkStatus"));
+    }
+
+    @Benchmark
+    public PluginResult maybeAskPermission() {
+        return await(mHarness.ask());
+    }
+}
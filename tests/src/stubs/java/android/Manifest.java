@@ -0,0 +1,11 @@
+package android;
+
+/**
+ * Stand-in for the Android class of the same name, with just the permissions the plugin uses.
+ */
+public final class Manifest {
+
+    public static final class permission {
+        public static final String POST_NOTIFICATIONS = "android.permission.POST_NOTIFICATIONS";
+    }
+}
@@ -0,0 +1,18 @@
+package android.app;
+
+import android.content.Context;
+
+/**
+ * Stand-in for the Android class of the same name. Tests subclass it, every method that is
+ * not overridden throws like the stubs of android.jar do.
+ */
+public class Activity extends Context {
+
+    public void runOnUiThread(Runnable action) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public boolean shouldShowRequestPermissionRationale(String permission) {
+        throw new RuntimeException("Stub!");
+    }
+}
@@ -0,0 +1,54 @@
+package android.app;
+
+import android.content.Context;
+import android.content.DialogInterface;
+
+/**
+ * Stand-in for the Android class of the same name, keeping track of whether it is showing.
+ */
+public class Dialog implements DialogInterface {
+
+    private final Context mContext;
+    private boolean mShowing;
+    private OnDismissListener mOnDismissListener;
+
+    public Dialog(Context context) {
+        mContext = context;
+    }
+
+    public final Context getContext() {
+        return mContext;
+    }
+
+    // There are no views to inflate here
+    public void create() {
+    }
+
+    public void show() {
+        mShowing = true;
+    }
+
+    public boolean isShowing() {
+        return mShowing;
+    }
+
+    @Override
+    public void cancel() {
+        dismiss();
+    }
+
+    public void setOnDismissListener(OnDismissListener listener) {
+        mOnDismissListener = listener;
+    }
+
+    @Override
+    public void dismiss() {
+        if (!mShowing) {
+            return;
+        }
+        mShowing = false;
+        if (mOnDismissListener != null) {
+            mOnDismissListener.onDismiss(this);
+        }
+    }
+}
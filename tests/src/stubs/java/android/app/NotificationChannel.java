@@ -0,0 +1,38 @@
+package android.app;
+
+/**
+ * Stand-in for the Android class of the same name.
+ */
+public final class NotificationChannel {
+
+    private final String mId;
+    private final CharSequence mName;
+    private final int mImportance;
+    private String mGroup;
+
+    public NotificationChannel(String id, CharSequence name, int importance) {
+        mId = id;
+        mName = name;
+        mImportance = importance;
+    }
+
+    public String getId() {
+        return mId;
+    }
+
+    public CharSequence getName() {
+        return mName;
+    }
+
+    public int getImportance() {
+        return mImportance;
+    }
+
+    public String getGroup() {
+        return mGroup;
+    }
+
+    public void setGroup(String groupId) {
+        mGroup = groupId;
+    }
+}
@@ -0,0 +1,32 @@
+package android.app;
+
+/**
+ * Stand-in for the Android class of the same name. setBlocked is hidden API on Android.
+ */
+public final class NotificationChannelGroup {
+
+    private final String mId;
+    private final CharSequence mName;
+    private boolean mBlocked;
+
+    public NotificationChannelGroup(String id, CharSequence name) {
+        mId = id;
+        mName = name;
+    }
+
+    public String getId() {
+        return mId;
+    }
+
+    public CharSequence getName() {
+        return mName;
+    }
+
+    public boolean isBlocked() {
+        return mBlocked;
+    }
+
+    public void setBlocked(boolean blocked) {
+        mBlocked = blocked;
+    }
+}
@@ -0,0 +1,28 @@
+package android.app;
+
+import java.util.List;
+
+/**
+ * Stand-in for the Android class of the same name. Tests subclass it, every method that is
+ * not overridden throws like the stubs of android.jar do.
+ */
+public class NotificationManager {
+
+    public static final int IMPORTANCE_NONE = 0;
+    public static final int IMPORTANCE_MIN = 1;
+    public static final int IMPORTANCE_LOW = 2;
+    public static final int IMPORTANCE_DEFAULT = 3;
+    public static final int IMPORTANCE_HIGH = 4;
+
+    public boolean areNotificationsEnabled() {
+        throw new RuntimeException("Stub!");
+    }
+
+    public List<NotificationChannel> getNotificationChannels() {
+        throw new RuntimeException("Stub!");
+    }
+
+    public List<NotificationChannelGroup> getNotificationChannelGroups() {
+        throw new RuntimeException("Stub!");
+    }
+}
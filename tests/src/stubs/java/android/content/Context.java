@@ -0,0 +1,30 @@
+package android.content;
+
+/**
+ * Stand-in for the Android class of the same name. Tests subclass it for what they need,
+ * every method that is not overridden throws like the stubs of android.jar do.
+ */
+public abstract class Context {
+
+    public static final int MODE_PRIVATE = 0;
+
+    public SharedPreferences getSharedPreferences(String name, int mode) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public Context getApplicationContext() {
+        throw new RuntimeException("Stub!");
+    }
+
+    public String getPackageName() {
+        throw new RuntimeException("Stub!");
+    }
+
+    public <T> T getSystemService(Class<T> serviceClass) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public int checkSelfPermission(String permission) {
+        throw new RuntimeException("Stub!");
+    }
+}
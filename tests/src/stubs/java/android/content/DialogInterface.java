@@ -0,0 +1,23 @@
+package android.content;
+
+/**
+ * Stand-in for the Android interface of the same name.
+ */
+public interface DialogInterface {
+
+    int BUTTON_POSITIVE = -1;
+    int BUTTON_NEGATIVE = -2;
+    int BUTTON_NEUTRAL = -3;
+
+    interface OnClickListener {
+        void onClick(DialogInterface dialog, int which);
+    }
+
+    interface OnDismissListener {
+        void onDismiss(DialogInterface dialog);
+    }
+
+    void cancel();
+
+    void dismiss();
+}
@@ -0,0 +1,30 @@
+package android.content;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stand-in for the Android class of the same name, keeping the action and string extras.
+ */
+public class Intent {
+
+    private final String mAction;
+    private final Map<String, String> mExtras = new HashMap<>();
+
+    public Intent(String action) {
+        mAction = action;
+    }
+
+    public String getAction() {
+        return mAction;
+    }
+
+    public Intent putExtra(String name, String value) {
+        mExtras.put(name, value);
+        return this;
+    }
+
+    public String getStringExtra(String name) {
+        return mExtras.get(name);
+    }
+}
@@ -0,0 +1,19 @@
+package android.os;
+
+/**
+ * Stand-in for the Android class of the same name. SDK_INT is not final, so a test can
+ * pick the API level the plugin runs on.
+ */
+public class Build {
+
+    public static class VERSION {
+        public static int SDK_INT = VERSION_CODES.TIRAMISU;
+    }
+
+    public static class VERSION_CODES {
+        public static final int O = 26;
+        public static final int P = 28;
+        public static final int S = 31;
+        public static final int TIRAMISU = 33;
+    }
+}
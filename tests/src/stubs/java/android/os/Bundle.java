@@ -0,0 +1,66 @@
+package android.os;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stand-in for the Android class of the same name, backed by a map.
+ */
+public final class Bundle {
+
+    private final Map<String, Object> mValues = new HashMap<>();
+
+    public Bundle() {
+    }
+
+    public Bundle(Bundle bundle) {
+        mValues.putAll(bundle.mValues);
+    }
+
+    public void putString(String key, String value) {
+        mValues.put(key, value);
+    }
+
+    public String getString(String key) {
+        Object value = mValues.get(key);
+        return value instanceof String ? (String) value : null;
+    }
+
+    public void putInt(String key, int value) {
+        mValues.put(key, value);
+    }
+
+    public int getInt(String key) {
+        return getInt(key, 0);
+    }
+
+    public int getInt(String key, int defaultValue) {
+        Object value = mValues.get(key);
+        return value instanceof Integer ? (Integer) value : defaultValue;
+    }
+
+    public void putLong(String key, long value) {
+        mValues.put(key, value);
+    }
+
+    public long getLong(String key) {
+        return getLong(key, 0L);
+    }
+
+    public long getLong(String key, long defaultValue) {
+        Object value = mValues.get(key);
+        return value instanceof Long ? (Long) value : defaultValue;
+    }
+
+    public boolean containsKey(String key) {
+        return mValues.containsKey(key);
+    }
+
+    public void remove(String key) {
+        mValues.remove(key);
+    }
+
+    public int size() {
+        return mValues.size();
+    }
+}
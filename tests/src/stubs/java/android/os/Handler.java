@@ -0,0 +1,30 @@
+package android.os;
+
+/**
+ * Stand-in for the Android class of the same name. Tests subclass it to decide when posted
+ * work runs, every method that is not overridden throws like the stubs of android.jar do.
+ */
+public class Handler {
+
+    private final Looper mLooper;
+
+    public Handler(Looper looper) {
+        mLooper = looper;
+    }
+
+    public final Looper getLooper() {
+        return mLooper;
+    }
+
+    public boolean post(Runnable r) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public boolean postDelayed(Runnable r, long delayMillis) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public void removeCallbacks(Runnable r) {
+        throw new RuntimeException("Stub!");
+    }
+}
@@ -0,0 +1,21 @@
+package android.os;
+
+/**
+ * Stand-in for the Android class of the same name. There is one main looper and it does not
+ * run anything, tests drive the Handler of the plugin themselves.
+ */
+public final class Looper {
+
+    private static final Looper sMainLooper = new Looper();
+
+    private Looper() {
+    }
+
+    public static Looper getMainLooper() {
+        return sMainLooper;
+    }
+
+    public static Looper myLooper() {
+        return null;
+    }
+}
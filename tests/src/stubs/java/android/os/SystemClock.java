@@ -0,0 +1,18 @@
+package android.os;
+
+/**
+ * Stand-in for the Android class of the same name, on top of the monotonic clock of the JVM.
+ */
+public final class SystemClock {
+
+    private SystemClock() {
+    }
+
+    public static long elapsedRealtime() {
+        return System.nanoTime() / 1000000;
+    }
+
+    public static long uptimeMillis() {
+        return System.nanoTime() / 1000000;
+    }
+}
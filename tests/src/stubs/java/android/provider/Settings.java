@@ -0,0 +1,15 @@
+package android.provider;
+
+/**
+ * Stand-in for the Android class of the same name, with just the constants the plugin uses.
+ */
+public final class Settings {
+
+    public static final String ACTION_ALL_APPS_NOTIFICATION_SETTINGS = "android.settings.ALL_APPS_NOTIFICATION_SETTINGS";
+    public static final String ACTION_CHANNEL_NOTIFICATION_SETTINGS = "android.settings.CHANNEL_NOTIFICATION_SETTINGS";
+    public static final String EXTRA_APP_PACKAGE = "android.provider.extra.APP_PACKAGE";
+    public static final String EXTRA_CHANNEL_ID = "android.provider.extra.CHANNEL_ID";
+
+    private Settings() {
+    }
+}
@@ -0,0 +1,41 @@
+package android.util;
+
+/**
+ * Stand-in for the Android class of the same name. Drops everything, unless the system
+ * property notifications_permission.log is set, then warnings and errors go to stderr.
+ */
+public final class Log {
+
+    private static final boolean ENABLED = Boolean.getBoolean("notifications_permission.log");
+
+    private Log() {
+    }
+
+    public static int v(String tag, String msg) {
+        return 0;
+    }
+
+    public static int d(String tag, String msg) {
+        return 0;
+    }
+
+    public static int i(String tag, String msg) {
+        return 0;
+    }
+
+    public static int w(String tag, String msg) {
+        return print("W", tag, msg);
+    }
+
+    public static int e(String tag, String msg) {
+        return print("E", tag, msg);
+    }
+
+    private static int print(String level, String tag, String msg) {
+        if (!ENABLED) {
+            return 0;
+        }
+        System.err.println(level + "/" + tag + ": " + msg);
+        return 0;
+    }
+}
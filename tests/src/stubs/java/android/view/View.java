@@ -0,0 +1,36 @@
+package android.view;
+
+/**
+ * Stand-in for the Android class of the same name, only routing clicks and keeping an id.
+ */
+public class View {
+
+    public static final int NO_ID = -1;
+
+    public interface OnClickListener {
+        void onClick(View v);
+    }
+
+    private OnClickListener mOnClickListener;
+    private int mId = NO_ID;
+
+    public void setId(int id) {
+        mId = id;
+    }
+
+    public int getId() {
+        return mId;
+    }
+
+    public void setOnClickListener(OnClickListener l) {
+        mOnClickListener = l;
+    }
+
+    public boolean performClick() {
+        if (mOnClickListener == null) {
+            return false;
+        }
+        mOnClickListener.onClick(this);
+        return true;
+    }
+}
@@ -0,0 +1,19 @@
+package android.widget;
+
+import android.view.View;
+
+/**
+ * Stand-in for the Android class of the same name, with its text.
+ */
+public class Button extends View {
+
+    private CharSequence mText;
+
+    public void setText(CharSequence text) {
+        mText = text;
+    }
+
+    public CharSequence getText() {
+        return mText;
+    }
+}
@@ -0,0 +1,11 @@
+package androidx.annotation;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+/**
+ * Stand-in for the AndroidX annotation of the same name.
+ */
+@Retention(RetentionPolicy.CLASS)
+public @interface StyleRes {
+}
@@ -0,0 +1,114 @@
+package androidx.appcompat.app;
+
+import android.app.Dialog;
+import android.content.Context;
+import android.content.DialogInterface;
+import android.widget.Button;
+
+/**
+ * Stand-in for the AndroidX class of the same name. Clicking a button calls its listener
+ * and dismisses the dialog, like on Android.
+ */
+public class AlertDialog extends Dialog {
+
+    private final int mTheme;
+    private CharSequence mTitle;
+    private CharSequence mMessage;
+    private final Button mPositiveButton = new Button();
+    private final Button mNegativeButton = new Button();
+
+    protected AlertDialog(Context context, int themeResId) {
+        super(context);
+        mTheme = themeResId;
+    }
+
+    public Button getButton(int whichButton) {
+        switch (whichButton) {
+            case DialogInterface.BUTTON_POSITIVE:
+                return mPositiveButton;
+            case DialogInterface.BUTTON_NEGATIVE:
+                return mNegativeButton;
+            default:
+                return null;
+        }
+    }
+
+    public void setTitle(CharSequence title) {
+        mTitle = title;
+    }
+
+    public void setMessage(CharSequence message) {
+        mMessage = message;
+    }
+
+    // Not on Android, where the title and message end up in views
+    public CharSequence getTitle() {
+        return mTitle;
+    }
+
+    public CharSequence getMessage() {
+        return mMessage;
+    }
+
+    public int getThemeResId() {
+        return mTheme;
+    }
+
+    private void setButton(Button button, CharSequence text, DialogInterface.OnClickListener listener, int which) {
+        button.setText(text);
+        button.setOnClickListener(v -> {
+            if (listener != null) {
+                listener.onClick(this, which);
+            }
+            dismiss();
+        });
+    }
+
+    public static class Builder {
+
+        private final Context mContext;
+        private final int mTheme;
+        private CharSequence mTitle;
+        private CharSequence mMessage;
+        private CharSequence mPositiveText;
+        private DialogInterface.OnClickListener mPositiveListener;
+        private CharSequence mNegativeText;
+        private DialogInterface.OnClickListener mNegativeListener;
+
+        public Builder(Context context, int themeResId) {
+            mContext = context;
+            mTheme = themeResId;
+        }
+
+        public Builder setTitle(CharSequence title) {
+            mTitle = title;
+            return this;
+        }
+
+        public Builder setMessage(CharSequence message) {
+            mMessage = message;
+            return this;
+        }
+
+        public Builder setPositiveButton(CharSequence text, DialogInterface.OnClickListener listener) {
+            mPositiveText = text;
+            mPositiveListener = listener;
+            return this;
+        }
+
+        public Builder setNegativeButton(CharSequence text, DialogInterface.OnClickListener listener) {
+            mNegativeText = text;
+            mNegativeListener = listener;
+            return this;
+        }
+
+        public AlertDialog create() {
+            AlertDialog dialog = new AlertDialog(mContext, mTheme);
+            dialog.setTitle(mTitle);
+            dialog.setMessage(mMessage);
+            dialog.setButton(dialog.mPositiveButton, mPositiveText, mPositiveListener, DialogInterface.BUTTON_POSITIVE);
+            dialog.setButton(dialog.mNegativeButton, mNegativeText, mNegativeListener, DialogInterface.BUTTON_NEGATIVE);
+            return dialog;
+        }
+    }
+}
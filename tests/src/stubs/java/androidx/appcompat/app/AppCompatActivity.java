@@ -0,0 +1,9 @@
+package androidx.appcompat.app;
+
+import androidx.fragment.app.FragmentActivity;
+
+/**
+ * Stand-in for the AndroidX class of the same name.
+ */
+public class AppCompatActivity extends FragmentActivity {
+}
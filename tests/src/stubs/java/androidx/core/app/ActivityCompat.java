@@ -0,0 +1,16 @@
+package androidx.core.app;
+
+import android.app.Activity;
+
+/**
+ * Stand-in for the AndroidX class of the same name, delegating like it does from API level 23 on.
+ */
+public class ActivityCompat {
+
+    protected ActivityCompat() {
+    }
+
+    public static boolean shouldShowRequestPermissionRationale(Activity activity, String permission) {
+        return activity.shouldShowRequestPermissionRationale(permission);
+    }
+}
@@ -0,0 +1,24 @@
+package androidx.core.app;
+
+import android.app.NotificationManager;
+import android.content.Context;
+
+/**
+ * Stand-in for the AndroidX class of the same name, delegating like it does from API level 24 on.
+ */
+public final class NotificationManagerCompat {
+
+    private final NotificationManager mNotificationManager;
+
+    private NotificationManagerCompat(Context context) {
+        mNotificationManager = context.getSystemService(NotificationManager.class);
+    }
+
+    public static NotificationManagerCompat from(Context context) {
+        return new NotificationManagerCompat(context);
+    }
+
+    public boolean areNotificationsEnabled() {
+        return mNotificationManager.areNotificationsEnabled();
+    }
+}
@@ -0,0 +1,16 @@
+package androidx.core.content;
+
+import android.content.Context;
+
+/**
+ * Stand-in for the AndroidX class of the same name.
+ */
+public class ContextCompat {
+
+    protected ContextCompat() {
+    }
+
+    public static int checkSelfPermission(Context context, String permission) {
+        return context.checkSelfPermission(permission);
+    }
+}
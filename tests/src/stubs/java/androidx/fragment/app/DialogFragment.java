@@ -0,0 +1,89 @@
+package androidx.fragment.app;
+
+import android.app.Dialog;
+import android.content.DialogInterface;
+import android.os.Bundle;
+
+/**
+ * Stand-in for the AndroidX class of the same name. The dialog is created when the fragment
+ * is added, shown when it starts, and dismissing it removes the fragment.
+ */
+public class DialogFragment extends Fragment implements DialogInterface.OnDismissListener {
+
+    private boolean mCancelable = true;
+    private Dialog mDialog;
+    private boolean mDismissed;
+
+    public int show(FragmentTransaction transaction, String tag) {
+        mDismissed = false;
+        transaction.add(this, tag);
+        return transaction.commit();
+    }
+
+    public void dismiss() {
+        dismissInternal();
+    }
+
+    public void dismissAllowingStateLoss() {
+        dismissInternal();
+    }
+
+    private void dismissInternal() {
+        if (mDismissed) {
+            return;
+        }
+        mDismissed = true;
+        if (mDialog != null) {
+            mDialog.setOnDismissListener(null);
+            mDialog.dismiss();
+        }
+        if (isAdded()) {
+            getParentFragmentManager().beginTransaction().remove(this).commitAllowingStateLoss();
+        }
+    }
+
+    public void setCancelable(boolean cancelable) {
+        mCancelable = cancelable;
+    }
+
+    public boolean isCancelable() {
+        return mCancelable;
+    }
+
+    public Dialog getDialog() {
+        return mDialog;
+    }
+
+    public Dialog onCreateDialog(Bundle savedInstanceState) {
+        return new Dialog(requireContext());
+    }
+
+    @Override
+    public void onStart() {
+        super.onStart();
+        if (mDialog != null) {
+            mDialog.show();
+        }
+    }
+
+    @Override
+    public void onDismiss(DialogInterface dialog) {
+        dismissInternal();
+    }
+
+    @Override
+    void performCreateView() {
+        mDialog = onCreateDialog(null);
+        mDialog.setOnDismissListener(this);
+    }
+
+    @Override
+    void performRemove() {
+        if (mDialog != null) {
+            mDialog.setOnDismissListener(null);
+            mDialog.dismiss();
+        }
+        mDismissed = true;
+        super.performRemove();
+    }
+}
@@ -0,0 +1,80 @@
+package androidx.fragment.app;
+
+import android.content.Context;
+import android.os.Bundle;
+
+/**
+ * Stand-in for the AndroidX class of the same name. FragmentManager moves it straight to
+ * started when it is added and back when it is removed.
+ */
+public class Fragment {
+
+    private Bundle mArguments;
+    private FragmentActivity mHost;
+    private FragmentManager mFragmentManager;
+    private String mTag;
+
+    public void setArguments(Bundle args) {
+        mArguments = args;
+    }
+
+    public final Bundle getArguments() {
+        return mArguments;
+    }
+
+    public final Bundle requireArguments() {
+        if (mArguments == null) {
+            throw new IllegalStateException("Fragment " + this + " does not have any arguments.");
+        }
+        return mArguments;
+    }
+
+    public Context getContext() {
+        return mHost;
+    }
+
+    public final Context requireContext() {
+        if (mHost == null) {
+            throw new IllegalStateException("Fragment " + this + " not attached to a context.");
+        }
+        return mHost;
+    }
+
+    public final FragmentManager getParentFragmentManager() {
+        if (mFragmentManager == null) {
+            throw new IllegalStateException("Fragment " + this + " not associated with a fragment manager.");
+        }
+        return mFragmentManager;
+    }
+
+    public final String getTag() {
+        return mTag;
+    }
+
+    public final boolean isAdded() {
+        return mHost != null;
+    }
+
+    public void onStart() {
+    }
+
+    public void onStop() {
+    }
+
+    void performAdd(FragmentManager fragmentManager, FragmentActivity host, String tag) {
+        mFragmentManager = fragmentManager;
+        mHost = host;
+        mTag = tag;
+        performCreateView();
+        onStart();
+    }
+
+    void performCreateView() {
+    }
+
+    void performRemove() {
+        onStop();
+        mHost = null;
+        mFragmentManager = null;
+    }
+}
@@ -0,0 +1,15 @@
+package androidx.fragment.app;
+
+import android.app.Activity;
+
+/**
+ * Stand-in for the AndroidX class of the same name.
+ */
+public class FragmentActivity extends Activity {
+
+    private final FragmentManager mFragmentManager = new FragmentManager(this);
+
+    public FragmentManager getSupportFragmentManager() {
+        return mFragmentManager;
+    }
+}
@@ -0,0 +1,71 @@
+package androidx.fragment.app;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stand-in for the AndroidX class of the same name. Transactions are executed when they are
+ * committed instead of being posted to the main thread, and only fragments with a tag are kept.
+ */
+public class FragmentManager {
+
+    private final FragmentActivity mHost;
+    private final Map<String, Fragment> mAdded = new LinkedHashMap<>();
+    private int mBackStackEntryCount;
+    private int mCommitCount;
+
+    FragmentManager(FragmentActivity host) {
+        mHost = host;
+    }
+
+    public FragmentTransaction beginTransaction() {
+        return new FragmentTransaction(this);
+    }
+
+    public synchronized Fragment findFragmentByTag(String tag) {
+        return mAdded.get(tag);
+    }
+
+    public synchronized List<Fragment> getFragments() {
+        return new ArrayList<>(mAdded.values());
+    }
+
+    public synchronized int getBackStackEntryCount() {
+        return mBackStackEntryCount;
+    }
+
+    void execute(List<FragmentTransaction.Op> ops, boolean addToBackStack) {
+        List<Fragment> removed = new ArrayList<>();
+        List<FragmentTransaction.Op> added = new ArrayList<>();
+        synchronized (this) {
+            for (FragmentTransaction.Op op : ops) {
+                if (op.add) {
+                    if (op.fragment.isAdded() || mAdded.containsValue(op.fragment)) {
+                        throw new IllegalStateException("Fragment already added: " + op.fragment);
+                    }
+                    mAdded.put(op.tag, op.fragment);
+                    added.add(op);
+                } else if (mAdded.values().remove(op.fragment)) {
+                    removed.add(op.fragment);
+                }
+            }
+            if (addToBackStack) {
+                mBackStackEntryCount++;
+            }
+            mCommitCount++;
+        }
+        // Lifecycle callbacks run outside the lock, like they run after the transaction on Android
+        for (Fragment fragment : removed) {
+            fragment.performRemove();
+        }
+        for (FragmentTransaction.Op op : added) {
+            op.fragment.performAdd(this, mHost, op.tag);
+        }
+    }
+
+    synchronized int nextCommitId() {
+        return mCommitCount;
+    }
+}
@@ -0,0 +1,60 @@
+package androidx.fragment.app;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stand-in for the AndroidX class of the same name, supporting add and remove by tag.
+ */
+public class FragmentTransaction {
+
+    static final class Op {
+        final boolean add;
+        final Fragment fragment;
+        final String tag;
+
+        Op(boolean add, Fragment fragment, String tag) {
+            this.add = add;
+            this.fragment = fragment;
+            this.tag = tag;
+        }
+    }
+
+    private final FragmentManager mManager;
+    private final List<Op> mOps = new ArrayList<>();
+    private boolean mAddToBackStack;
+    private boolean mCommitted;
+
+    FragmentTransaction(FragmentManager manager) {
+        mManager = manager;
+    }
+
+    public FragmentTransaction add(Fragment fragment, String tag) {
+        mOps.add(new Op(true, fragment, tag));
+        return this;
+    }
+
+    public FragmentTransaction remove(Fragment fragment) {
+        mOps.add(new Op(false, fragment, null));
+        return this;
+    }
+
+    public FragmentTransaction addToBackStack(String name) {
+        mAddToBackStack = true;
+        return this;
+    }
+
+    public int commit() {
+        if (mCommitted) {
+            throw new IllegalStateException("commit already called");
+        }
+        mCommitted = true;
+        int id = mAddToBackStack ? mManager.nextCommitId() : -1;
+        mManager.execute(mOps, mAddToBackStack);
+        return id;
+    }
+
+    public int commitAllowingStateLoss() {
+        return commit();
+    }
+}
@@ -0,0 +1,30 @@
+package org.apache.cordova;
+
+import android.content.Context;
+import android.content.Intent;
+import androidx.appcompat.app.AppCompatActivity;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Stand-in for the Cordova interface of the same name, as of cordova-android 9.
+ */
+public interface CordovaInterface {
+
+    void startActivityForResult(CordovaPlugin command, Intent intent, int requestCode);
+
+    void setActivityResultCallback(CordovaPlugin plugin);
+
+    AppCompatActivity getActivity();
+
+    Context getContext();
+
+    Object onMessage(String id, Object data);
+
+    ExecutorService getThreadPool();
+
+    void requestPermission(CordovaPlugin plugin, int requestCode, String permission);
+
+    void requestPermissions(CordovaPlugin plugin, int requestCode, String[] permissions);
+
+    boolean hasPermission(String permission);
+}
@@ -0,0 +1,21 @@
+package org.apache.cordova;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stand-in for the Cordova class of the same name.
+ */
+public class CordovaPreferences {
+
+    private final Map<String, String> mPrefs = new HashMap<>();
+
+    public void set(String name, String value) {
+        mPrefs.put(name.toLowerCase(), value);
+    }
+
+    public String getString(String name, String defaultValue) {
+        String value = mPrefs.get(name.toLowerCase());
+        return value == null ? defaultValue : value;
+    }
+}
@@ -0,0 +1,16 @@
+package org.apache.cordova;
+
+import android.content.Context;
+import android.view.View;
+
+/**
+ * Stand-in for the Cordova interface of the same name, with what plugins and callbacks use.
+ */
+public interface CordovaWebView {
+
+    Context getContext();
+
+    View getView();
+
+    void sendPluginResult(PluginResult cr, String callbackId);
+}
@@ -0,0 +1,103 @@
+package nl.klaasmaakt.cordova.notifications_permission;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+/**
+ * maybeAskPermissions next to other batches and to maybeAskPermission: only calls for the same
+ * permissions are joined, and the OS is asked one request at a time.
+ */
+public class BatchRequestTest {
+
+    private static final String CONTACTS = "android.permission.READ_CONTACTS";
+    private static final String CAMERA = "android.permission.CAMERA";
+
+    private final PluginHarness harness = new PluginHarness();
+
+    private RecordingCallbackContext askBatch(String... permissions) {
+        return harness.execute("maybeAskPermissions", new JSONArray(Arrays.asList(permissions)));
+    }
+
+    private static JSONObject results(RecordingCallbackContext callback) throws JSONException {
+        return new JSONObject(callback.lastResult().getMessage());
+    }
+
+    @Test
+    public void sameBatchIsJoined() throws JSONException {
+        RecordingCallbackContext first = askBatch(CONTACTS, CAMERA);
+        RecordingCallbackContext second = askBatch(CAMERA, CONTACTS);
+        assertEquals(1, harness.os.requestCount());
+        harness.os.grant();
+        assertEquals(PermissionStatus.GRANTED_NEWLY_WITHOUT_RATIONALE.value(), results(first).getString(CONTACTS));
+        assertEquals(results(first).toString(), results(second).toString());
+    }
+
+    @Test
+    public void otherBatchWaitsForTheOneInFlight() throws JSONException {
+        RecordingCallbackContext contacts = askBatch(CONTACTS);
+        RecordingCallbackContext camera = askBatch(CAMERA);
+        assertEquals(1, harness.os.requestCount());
+        assertTrue(camera.results().isEmpty());
+
+        harness.os.grant();
+        assertEquals(PermissionStatus.GRANTED_NEWLY_WITHOUT_RATIONALE.value(), results(contacts).getString(CONTACTS));
+        assertFalse(results(contacts).has(CAMERA));
+        assertEquals(2, harness.os.requestCount());
+
+        harness.os.deny();
+        assertEquals(PermissionStatus.DENIED_NOT_PERMANENTLY_NEWLY.value(), results(camera).getString(CAMERA));
+        assertFalse(results(camera).has(CONTACTS));
+    }
+
+    @Test
+    public void flowWaitsForTheBatchInFlight() throws JSONException {
+        RecordingCallbackContext batch = askBatch(CONTACTS);
+        RecordingCallbackContext flow = harness.ask();
+        assertEquals(1, harness.os.requestCount());
+
+        harness.os.deny();
+        assertEquals(PermissionStatus.DENIED_NOT_PERMANENTLY_NEWLY.value(), results(batch).getString(CONTACTS));
+        assertTrue(flow.results().isEmpty());
+        assertEquals(2, harness.os.requestCount());
+
+        harness.os.grant();
+        assertEquals(PermissionStatus.GRANTED_NEWLY_WITHOUT_RATIONALE.value(), flow.onlyMessage());
+    }
+
+    @Test
+    public void batchWaitsForTheFlowInFlight() throws JSONException {
+        RecordingCallbackContext flow = harness.ask();
+        RecordingCallbackContext batch = askBatch(CONTACTS);
+        assertEquals(1, harness.os.requestCount());
+
+        harness.os.grant();
+        assertEquals(PermissionStatus.GRANTED_NEWLY_WITHOUT_RATIONALE.value(), flow.onlyMessage());
+        assertTrue(batch.results().isEmpty());
+
+        harness.os.grant();
+        assertEquals(PermissionStatus.GRANTED_NEWLY_WITHOUT_RATIONALE.value(), results(batch).getString(CONTACTS));
+    }
+
+    @Test
+    public void batchDenialOfNotificationsStartsTheBackoff() throws JSONException {
+        harness.execute("configureBackoff", new JSONObject().put("cooldownMs", 60000));
+        RecordingCallbackContext batch = askBatch(PluginHarness.PERMISSION, CONTACTS);
+        harness.os.deny();
+        assertEquals(PermissionStatus.DENIED_NOT_PERMANENTLY_NEWLY.value(), results(batch).getString(PluginHarness.PERMISSION));
+
+        // Counted like the result of maybeAskPermission, and kept for the backoff
+        JSONObject metrics = new JSONObject(harness.execute("getMetrics").lastResult().getMessage());
+        assertEquals(1, metrics.getJSONObject("statuses").getLong(PermissionStatus.DENIED_NOT_PERMANENTLY_NEWLY.value()));
+        JSONObject analytics = new JSONObject(harness.execute("drainAnalytics").lastResult().getMessage());
+        assertEquals(1, analytics.getJSONObject("statuses").getLong(PermissionStatus.DENIED_NOT_PERMANENTLY_NEWLY.value()));
+        assertEquals(PermissionStatus.DENIED_NOT_PERMANENTLY_NEWLY.value(), harness.ask().onlyMessage());
+        assertEquals(1, harness.os.requestCount());
+    }
+}
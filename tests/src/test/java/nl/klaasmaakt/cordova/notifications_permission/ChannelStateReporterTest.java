@@ -0,0 +1,125 @@
+package nl.klaasmaakt.cordova.notifications_permission;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.app.NotificationChannel;
+import android.app.NotificationChannelGroup;
+import android.app.NotificationManager;
+import android.os.Build;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+/**
+ * The reports of ChannelStateReporter, complete and limited to what changed.
+ */
+public class ChannelStateReporterTest {
+
+    private final PluginHarness harness = new PluginHarness();
+    private final FakeActivity.FakeNotificationManager notificationManager = harness.activity.notificationManager();
+    private final ChannelStateReporter reporter = new ChannelStateReporter();
+
+    private JSONObject report(boolean onlyChanged) throws JSONException {
+        return reporter.report(harness.activity, onlyChanged);
+    }
+
+    private static NotificationChannel channel(String id, int importance, String group) {
+        NotificationChannel channel = new NotificationChannel(id, id.toUpperCase(), importance);
+        channel.setGroup(group);
+        return channel;
+    }
+
+    private static String ids(JSONArray reports) throws JSONException {
+        StringBuilder ids = new StringBuilder();
+        for (int i = 0; i < reports.length(); i++) {
+            ids.append(i == 0 ? "" : ",").append(reports.get(i) instanceof JSONObject ? reports.getJSONObject(i).getString("id") : reports.getString(i));
+        }
+        return ids.toString();
+    }
+
+    @Test
+    public void reportsEveryChannelAndGroup() throws JSONException {
+        notificationManager.groups.add(new NotificationChannelGroup("feeds", "Feeds"));
+        notificationManager.channels.add(channel("news", NotificationManager.IMPORTANCE_DEFAULT, "feeds"));
+        notificationManager.channels.add(channel("alerts", NotificationManager.IMPORTANCE_NONE, null));
+        JSONObject report = report(false);
+        assertTrue(report.getBoolean("enabled"));
+        JSONObject news = report.getJSONArray("channels").getJSONObject(0);
+        assertEquals("NEWS", news.getString("name"));
+        assertEquals("feeds", news.getString("group"));
+        assertEquals(NotificationManager.IMPORTANCE_DEFAULT, news.getInt("importance"));
+        assertFalse(news.getBoolean("blocked"));
+        JSONObject alerts = report.getJSONArray("channels").getJSONObject(1);
+        assertTrue(alerts.isNull("group"));
+        assertTrue(alerts.getBoolean("blocked"));
+        assertEquals("feeds", ids(report.getJSONArray("groups")));
+        // Without onlyChanged every report is complete
+        assertEquals("news,alerts", ids(report(false).getJSONArray("channels")));
+    }
+
+    @Test
+    public void onlyChangedLeavesOutWhatDidNotChange() throws JSONException {
+        notificationManager.groups.add(new NotificationChannelGroup("feeds", "Feeds"));
+        notificationManager.channels.add(channel("news", NotificationManager.IMPORTANCE_DEFAULT, "feeds"));
+        notificationManager.channels.add(channel("alerts", NotificationManager.IMPORTANCE_HIGH, null));
+        // The first report has everything
+        assertEquals("news,alerts", ids(report(true).getJSONArray("channels")));
+        JSONObject unchanged = report(true);
+        assertEquals(0, unchanged.getJSONArray("channels").length());
+        assertEquals(0, unchanged.getJSONArray("groups").length());
+        assertEquals(0, unchanged.getJSONArray("removedChannels").length());
+
+        // The user lowers the importance of one channel
+        notificationManager.channels.set(1, channel("alerts", NotificationManager.IMPORTANCE_LOW, null));
+        JSONArray changed = report(true).getJSONArray("channels");
+        assertEquals("alerts", ids(changed));
+        assertEquals(NotificationManager.IMPORTANCE_LOW, changed.getJSONObject(0).getInt("importance"));
+        assertEquals(0, report(true).getJSONArray("channels").length());
+    }
+
+    @Test
+    public void blockedGroupBlocksItsChannels() throws JSONException {
+        NotificationChannelGroup feeds = new NotificationChannelGroup("feeds", "Feeds");
+        notificationManager.groups.add(feeds);
+        notificationManager.channels.add(channel("news", NotificationManager.IMPORTANCE_DEFAULT, "feeds"));
+        report(true);
+
+        feeds.setBlocked(true);
+        JSONObject report = report(true);
+        assertTrue(report.getJSONArray("groups").getJSONObject(0).getBoolean("blocked"));
+        JSONObject news = report.getJSONArray("channels").getJSONObject(0);
+        // The importance of the channel itself did not change
+        assertEquals(NotificationManager.IMPORTANCE_DEFAULT, news.getInt("importance"));
+        assertTrue(news.getBoolean("blocked"));
+    }
+
+    @Test
+    public void removedChannelsAndGroupsAreReportedOnce() throws JSONException {
+        notificationManager.groups.add(new NotificationChannelGroup("feeds", "Feeds"));
+        notificationManager.channels.add(channel("news", NotificationManager.IMPORTANCE_DEFAULT, "feeds"));
+        notificationManager.channels.add(channel("alerts", NotificationManager.IMPORTANCE_HIGH, null));
+        report(true);
+
+        notificationManager.channels.remove(0);
+        notificationManager.groups.clear();
+        JSONObject report = report(true);
+        assertEquals("news", ids(report.getJSONArray("removedChannels")));
+        assertEquals("feeds", ids(report.getJSONArray("removedGroups")));
+        assertEquals(0, report.getJSONArray("channels").length());
+        assertEquals(0, report(true).getJSONArray("removedChannels").length());
+    }
+
+    @Test
+    public void noChannelsBeforeApiLevel26() throws JSONException {
+        Build.VERSION.SDK_INT = Build.VERSION_CODES.O - 1;
+        notificationManager.channels.add(channel("news", NotificationManager.IMPORTANCE_DEFAULT, null));
+        notificationManager.enabled = false;
+        JSONObject report = report(true);
+        assertFalse(report.getBoolean("enabled"));
+        assertEquals(0, report.getJSONArray("channels").length());
+        assertEquals(0, report.getJSONArray("removedChannels").length());
+    }
+}
@@ -0,0 +1,84 @@
+package nl.klaasmaakt.cordova.notifications_permission;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.cordova.PluginResult;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.junit.Test;
+
+/**
+ * configure registers dialog settings under an id, which maybeAskPermission can pass instead of the settings.
+ */
+public class ConfigureTest {
+
+    private final PluginHarness harness = new PluginHarness();
+
+    /**
+     * @return The arguments www/NotificationsPermission.js sends to configure, with the given rationale title.
+     */
+    private static Object[] configArgs(int version, String id, String rationaleTitle) {
+        return new Object[]{
+                version, id,
+                true, rationaleTitle, "We would like to send you notifications.", "OK", "Not now", 16974545,
+                true, "Notifications are off", "Turn them on in settings.", "Settings", "No thanks", 16974545, ""};
+    }
+
+    /**
+     * Ask with the id of configured dialogs until the rationale dialog shows, then deny through it.
+     *
+     * @return The title of the rationale dialog.
+     */
+    private String rationaleTitle(String id) {
+        RecordingCallbackContext callback = harness.execute("maybeAskPermission", id);
+        String title = harness.dialogTitle();
+        harness.clickNegative();
+        assertEquals(PermissionStatus.DENIED_THROUGH_RATIONALE_DIALOG.value(), callback.onlyMessage());
+        return title;
+    }
+
+    private void denyFirstAsk() {
+        harness.ask();
+        harness.os.deny();
+    }
+
+    @Test
+    public void otherVersionIsRejected() {
+        RecordingCallbackContext configured = harness.execute("configure", configArgs(2, "default", "Notifications"));
+        assertEquals(PluginResult.Status.ERROR.ordinal(), configured.lastResult().getStatus());
+        assertEquals("Unsupported config version 2", configured.onlyMessage());
+
+        // Nothing has been registered
+        RecordingCallbackContext callback = harness.execute("maybeAskPermission", "default");
+        assertEquals(PluginResult.Status.ERROR.ordinal(), callback.lastResult().getStatus());
+        assertTrue(callback.onlyMessage().contains("No dialogs configured with id default"));
+    }
+
+    @Test
+    public void wrongTypeIsRejectedAndKeepsTheRegisteredDialogs() throws JSONException {
+        harness.execute("configure", configArgs(1, "default", "Notifications"));
+        Object[] args = configArgs(1, "default", "Stay informed");
+        // The theme is not an integer
+        args[7] = "dark";
+        try {
+            harness.plugin.execute("configure", new JSONArray(args), new RecordingCallbackContext());
+            throw new AssertionError("Accepted a theme that is not an integer");
+        } catch (JSONException expected) {
+            // Sent to JavaScript as an error by Cordova
+        }
+        denyFirstAsk();
+        assertEquals("Notifications", rationaleTitle("default"));
+    }
+
+    @Test
+    public void updatingOneIdKeepsTheOthers() {
+        harness.execute("configure", configArgs(1, "onboarding", "Welcome"));
+        harness.execute("configure", configArgs(1, "settings", "Notifications"));
+        RecordingCallbackContext updated = harness.execute("configure", configArgs(1, "onboarding", "Stay informed"));
+        assertEquals(PluginResult.Status.OK.ordinal(), updated.lastResult().getStatus());
+        denyFirstAsk();
+        assertEquals("Stay informed", rationaleTitle("onboarding"));
+        assertEquals("Notifications", rationaleTitle("settings"));
+    }
+}
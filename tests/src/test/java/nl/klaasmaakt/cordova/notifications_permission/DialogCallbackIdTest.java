@@ -0,0 +1,115 @@
+package nl.klaasmaakt.cordova.notifications_permission;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import android.os.Bundle;
+import android.view.View;
+import androidx.fragment.app.Fragment;
+import org.junit.Test;
+
+/**
+ * A dialog that Android recreates from its saved arguments, after the activity or the process
+ * has been recreated, finds the ClickCallback of the new plugin instance.
+ */
+public class DialogCallbackIdTest {
+
+    private final PluginHarness harness = new PluginHarness();
+
+    private static String callbackId(PluginHarness harness) {
+        Fragment fragment = harness.activity.getSupportFragmentManager().findFragmentByTag("dialog");
+        assertNotNull(fragment);
+        return fragment.getArguments().getString("callback_id");
+    }
+
+    /**
+     * Show the rationale dialog: deny once, then ask again.
+     */
+    private static void showRationale(PluginHarness harness) {
+        harness.ask();
+        harness.os.deny();
+        harness.ask();
+        assertEquals("Notifications", harness.dialogTitle());
+    }
+
+    @Test
+    public void recreatedDialogFindsTheCallbackOfTheNewInstance() {
+        showRationale(harness);
+        String callbackId = callbackId(harness);
+        Bundle arguments = harness.activity.getSupportFragmentManager().findFragmentByTag("dialog").getArguments();
+        ClickCallback before = ClickCallbackRegistry.get(callbackId);
+        assertNotNull(before);
+
+        // Android recreates the dialog from its arguments in the new activity, then destroys the old plugin
+        PluginHarness restarted = harness.restart();
+        PermissionsDialogFragment recreated = new PermissionsDialogFragment();
+        recreated.setArguments(arguments);
+        recreated.show(restarted.activity.getSupportFragmentManager().beginTransaction(), "dialog");
+        harness.plugin.onDestroy();
+
+        ClickCallback after = ClickCallbackRegistry.get(callbackId);
+        assertNotNull(after);
+        assertEquals(callbackId, callbackId(restarted));
+        // The click reaches the new instance, which has no flow in flight and ignores it
+        restarted.clickNegative();
+        assertSame(after, ClickCallbackRegistry.get(callbackId));
+
+        // Its own dialogs use the same id
+        RecordingCallbackContext callback = restarted.ask();
+        assertEquals(callbackId, callbackId(restarted));
+        restarted.clickPositive();
+        restarted.os.grant();
+        assertEquals(PermissionStatus.GRANTED_NEWLY_AFTER_RATIONALE.value(), callback.onlyMessage());
+    }
+
+    @Test
+    public void destroyingTheOldInstanceKeepsTheCallbackOfTheNewOne() {
+        showRationale(harness);
+        String callbackId = callbackId(harness);
+        PluginHarness restarted = harness.restart();
+        ClickCallback registered = ClickCallbackRegistry.get(callbackId);
+        harness.plugin.onDestroy();
+        assertSame(registered, ClickCallbackRegistry.get(callbackId));
+
+        restarted.plugin.onDestroy();
+        assertNull(ClickCallbackRegistry.get(callbackId));
+    }
+
+    @Test
+    public void webViewsWithoutIdInOneActivityKeepTheirOwnCallbacks() {
+        PluginHarness first = harness.inSameActivity(View.NO_ID);
+        PluginHarness second = harness.inSameActivity(View.NO_ID);
+        first.ask();
+        first.os.deny();
+        RecordingCallbackContext callback = first.ask();
+        String firstId = callbackId(first);
+
+        // The click reaches the instance that showed the dialog, not the one created after it
+        first.clickNegative();
+        assertEquals(PermissionStatus.DENIED_THROUGH_RATIONALE_DIALOG.value(), callback.onlyMessage());
+        second.plugin.onDestroy();
+        assertNotNull(ClickCallbackRegistry.get(firstId));
+    }
+
+    @Test
+    public void webViewsWithoutIdGetTheSameIdsAfterRecreation() {
+        PluginHarness first = harness.inSameActivity(View.NO_ID);
+        PluginHarness second = first.inSameActivity(View.NO_ID);
+        showRationale(second);
+        String secondId = callbackId(second);
+        second.clickNegative();
+
+        // Android recreates the activity, the plugins of its WebViews are created in the same order
+        PluginHarness recreated = first.restart();
+        PluginHarness recreatedSecond = recreated.inSameActivity(View.NO_ID);
+        RecordingCallbackContext callback = recreatedSecond.ask();
+        assertEquals(secondId, callbackId(recreatedSecond));
+        recreatedSecond.clickNegative();
+        assertEquals(PermissionStatus.DENIED_THROUGH_RATIONALE_DIALOG.value(), callback.onlyMessage());
+        recreated.ask();
+        assertNotEquals(secondId, callbackId(recreated));
+    }
+}
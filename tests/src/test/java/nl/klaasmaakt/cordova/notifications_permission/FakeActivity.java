@@ -0,0 +1,94 @@
+package nl.klaasmaakt.cordova.notifications_permission;
+
+import android.app.NotificationChannel;
+import android.app.NotificationChannelGroup;
+import android.app.NotificationManager;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import androidx.appcompat.app.AppCompatActivity;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The activity, and the context of the app, on top of the fake OS. The UI thread is the
+ * thread that asks, so work posted to it runs right away.
+ */
+final class FakeActivity extends AppCompatActivity {
+
+    private final FakeSharedPreferences mPreferences;
+    private final FakePermissionOracle mOs;
+    private final FakeNotificationManager mNotificationManager = new FakeNotificationManager();
+
+    FakeActivity(FakeSharedPreferences preferences, FakePermissionOracle os) {
+        mPreferences = preferences;
+        mOs = os;
+    }
+
+    FakeNotificationManager notificationManager() {
+        return mNotificationManager;
+    }
+
+    @Override
+    public SharedPreferences getSharedPreferences(String name, int mode) {
+        return mPreferences;
+    }
+
+    @Override
+    public Context getApplicationContext() {
+        return this;
+    }
+
+    @Override
+    public String getPackageName() {
+        return "com.example.app";
+    }
+
+    @Override
+    public <T> T getSystemService(Class<T> serviceClass) {
+        if (serviceClass == NotificationManager.class) {
+            return serviceClass.cast(mNotificationManager);
+        }
+        return null;
+    }
+
+    @Override
+    public int checkSelfPermission(String permission) {
+        return mOs.hasPermission(permission) ? PackageManager.PERMISSION_GRANTED : PackageManager.PERMISSION_DENIED;
+    }
+
+    @Override
+    public void runOnUiThread(Runnable action) {
+        action.run();
+    }
+
+    @Override
+    public boolean shouldShowRequestPermissionRationale(String permission) {
+        return mOs.shouldShowRationale(permission);
+    }
+
+    /**
+     * NotificationManager with channels and groups set up by the test.
+     */
+    static final class FakeNotificationManager extends NotificationManager {
+
+        final List<NotificationChannel> channels = new ArrayList<>();
+        final List<NotificationChannelGroup> groups = new ArrayList<>();
+        volatile boolean enabled = true;
+
+        @Override
+        public boolean areNotificationsEnabled() {
+            return enabled;
+        }
+
+        @Override
+        public List<NotificationChannel> getNotificationChannels() {
+            return new ArrayList<>(channels);
+        }
+
+        @Override
+        public List<NotificationChannelGroup> getNotificationChannelGroups() {
+            return new ArrayList<>(groups);
+        }
+    }
+}
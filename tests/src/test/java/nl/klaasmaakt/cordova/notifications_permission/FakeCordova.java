@@ -0,0 +1,118 @@
+package nl.klaasmaakt.cordova.notifications_permission;
+
+import android.content.Context;
+import android.content.Intent;
+import androidx.appcompat.app.AppCompatActivity;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.apache.cordova.CordovaInterface;
+import org.apache.cordova.CordovaPlugin;
+
+/**
+ * CordovaInterface on top of the fake activity and OS. Activities started for a result are
+ * recorded, the test plays the user coming back by calling onResume.
+ */
+final class FakeCordova implements CordovaInterface {
+
+    private final FakeActivity mActivity;
+    private final FakePermissionOracle mOs;
+    private final ExecutorService mThreadPool;
+    private final List<Intent> mStartedIntents = new ArrayList<>();
+
+    FakeCordova(FakeActivity activity, FakePermissionOracle os, ExecutorService threadPool) {
+        mActivity = activity;
+        mOs = os;
+        mThreadPool = threadPool;
+    }
+
+    /**
+     * @return An ExecutorService that runs every task right away on the calling thread.
+     */
+    static ExecutorService directExecutor() {
+        return new AbstractExecutorService() {
+            private volatile boolean mShutdown;
+
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+
+            @Override
+            public void shutdown() {
+                mShutdown = true;
+            }
+
+            @Override
+            public List<Runnable> shutdownNow() {
+                mShutdown = true;
+                return new ArrayList<>();
+            }
+
+            @Override
+            public boolean isShutdown() {
+                return mShutdown;
+            }
+
+            @Override
+            public boolean isTerminated() {
+                return mShutdown;
+            }
+
+            @Override
+            public boolean awaitTermination(long timeout, TimeUnit unit) {
+                return true;
+            }
+        };
+    }
+
+    synchronized List<Intent> startedIntents() {
+        return new ArrayList<>(mStartedIntents);
+    }
+
+    @Override
+    public synchronized void startActivityForResult(CordovaPlugin command, Intent intent, int requestCode) {
+        mStartedIntents.add(intent);
+    }
+
+    @Override
+    public void setActivityResultCallback(CordovaPlugin plugin) {
+    }
+
+    @Override
+    public AppCompatActivity getActivity() {
+        return mActivity;
+    }
+
+    @Override
+    public Context getContext() {
+        return mActivity;
+    }
+
+    @Override
+    public Object onMessage(String id, Object data) {
+        return null;
+    }
+
+    @Override
+    public ExecutorService getThreadPool() {
+        return mThreadPool;
+    }
+
+    @Override
+    public void requestPermission(CordovaPlugin plugin, int requestCode, String permission) {
+        mOs.requestPermissions(plugin, requestCode, new String[]{permission});
+    }
+
+    @Override
+    public void requestPermissions(CordovaPlugin plugin, int requestCode, String[] permissions) {
+        mOs.requestPermissions(plugin, requestCode, permissions);
+    }
+
+    @Override
+    public boolean hasPermission(String permission) {
+        return mOs.hasPermission(permission);
+    }
+}
@@ -0,0 +1,55 @@
+package nl.klaasmaakt.cordova.notifications_permission;
+
+import android.os.Handler;
+import android.os.Looper;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Handler of which the posted work only runs when the test calls runAll(), whatever the delay.
+ */
+final class FakeHandler extends Handler {
+
+    private final List<Runnable> mPending = new ArrayList<>();
+
+    FakeHandler() {
+        super(Looper.getMainLooper());
+    }
+
+    @Override
+    public synchronized boolean post(Runnable r) {
+        mPending.add(r);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean postDelayed(Runnable r, long delayMillis) {
+        mPending.add(r);
+        return true;
+    }
+
+    @Override
+    public synchronized void removeCallbacks(Runnable r) {
+        while (mPending.remove(r)) {
+            // Remove every post of it
+        }
+    }
+
+    synchronized int pendingCount() {
+        return mPending.size();
+    }
+
+    /**
+     * Run the work that has been posted so far.
+     */
+    void runAll() {
+        List<Runnable> pending;
+        synchronized (this) {
+            pending = new ArrayList<>(mPending);
+            mPending.clear();
+        }
+        for (Runnable r : pending) {
+            r.run();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package nl.klaasmaakt.cordova.notifications_permission;
+
+import android.content.pm.PackageManager;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.cordova.CordovaPlugin;
+import org.json.JSONException;
+
+/**
+ * Scripted stand-in for the OS permission system, following what Android 13 does: the first
+ * denial makes the OS advise a rationale, the second one denies permanently, after which
+ * requests are denied without showing a prompt. A request stays pending until the test
+ * answers it, like the OS prompt stays open until the user taps a button.
+ */
+final class FakePermissionOracle implements PermissionOracle {
+
+    private static final class State {
+        boolean granted;
+        int denials;
+    }
+
+    private final Map<String, State> mStates = new HashMap<>();
+    private CordovaPlugin mPendingPlugin;
+    private int mPendingRequestCode;
+    private String[] mPendingPermissions;
+    private int mRequestCount;
+
+    private State state(String permission) {
+        State state = mStates.get(permission);
+        if (state == null) {
+            state = new State();
+            mStates.put(permission, state);
+        }
+        return state;
+    }
+
+    @Override
+    public synchronized boolean hasPermission(String permission) {
+        return state(permission).granted;
+    }
+
+    @Override
+    public synchronized boolean shouldShowRationale(String permission) {
+        State state = state(permission);
+        return !state.granted && state.denials == 1;
+    }
+
+    @Override
+    public synchronized void requestPermissions(CordovaPlugin plugin, int requestCode, String[] permissions) {
+        if (mPendingPlugin != null) {
+            // Android drops a request made while another one is showing, and answers it with no results
+            deliver(plugin, requestCode, new String[0], new int[0]);
+            return;
+        }
+        mRequestCount++;
+        mPendingPlugin = plugin;
+        mPendingRequestCode = requestCode;
+        mPendingPermissions = permissions;
+    }
+
+    /**
+     * @return The number of requests the OS has accepted.
+     */
+    synchronized int requestCount() {
+        return mRequestCount;
+    }
+
+    synchronized boolean hasPendingRequest() {
+        return mPendingPlugin != null;
+    }
+
+    /**
+     * @return Whether the OS would show its prompt for the permission, false if it denies right away.
+     */
+    synchronized boolean wouldPrompt(String permission) {
+        State state = state(permission);
+        return !state.granted && state.denials < 2;
+    }
+
+    /**
+     * The user taps Allow for every permission of the pending request.
+     */
+    void grant() {
+        answer(true);
+    }
+
+    /**
+     * The user taps Don't allow, or the OS denies right away when the permission is denied permanently.
+     */
+    void deny() {
+        answer(false);
+    }
+
+    private void answer(boolean grant) {
+        CordovaPlugin plugin;
+        int requestCode;
+        String[] permissions;
+        int[] results;
+        synchronized (this) {
+            if (mPendingPlugin == null) {
+                throw new IllegalStateException("No permission request is pending");
+            }
+            plugin = mPendingPlugin;
+            requestCode = mPendingRequestCode;
+            permissions = mPendingPermissions;
+            mPendingPlugin = null;
+            results = new int[permissions.length];
+            for (int i = 0; i < permissions.length; i++) {
+                State state = state(permissions[i]);
+                if (state.granted) {
+                    results[i] = PackageManager.PERMISSION_GRANTED;
+                } else if (grant && state.denials < 2) {
+                    state.granted = true;
+                    results[i] = PackageManager.PERMISSION_GRANTED;
+                } else {
+                    state.denials = Math.min(state.denials + 1, 2);
+                    results[i] = PackageManager.PERMISSION_DENIED;
+                }
+            }
+        }
+        deliver(plugin, requestCode, permissions, results);
+    }
+
+    /**
+     * The activity is recreated while the prompt is showing and the OS answers with no results.
+     */
+    void cancelPending() {
+        CordovaPlugin plugin;
+        int requestCode;
+        synchronized (this) {
+            if (mPendingPlugin == null) {
+                throw new IllegalStateException("No permission request is pending");
+            }
+            plugin = mPendingPlugin;
+            requestCode = mPendingRequestCode;
+            mPendingPlugin = null;
+        }
+        deliver(plugin, requestCode, new String[0], new int[0]);
+    }
+
+    /**
+     * The user grants the permission in system settings.
+     */
+    synchronized void grantInSettings(String permission) {
+        state(permission).granted = true;
+    }
+
+    /**
+     * The user revokes the permission in system settings, which resets the denials.
+     */
+    synchronized void revokeInSettings(String permission) {
+        State state = state(permission);
+        state.granted = false;
+        state.denials = 0;
+    }
+
+    private static void deliver(CordovaPlugin plugin, int requestCode, String[] permissions, int[] results) {
+        try {
+            plugin.onRequestPermissionResult(requestCode, permissions, results);
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package nl.klaasmaakt.cordova.notifications_permission;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import org.apache.cordova.PluginResult;
+import org.junit.Test;
+
+/**
+ * Flows that time out or are cancelled while the OS prompt is showing. The prompt stays until
+ * the user answers it, its result must not be sent nor classified against a later flow, and a
+ * later flow must not ask the OS while the prompt is still showing.
+ */
+public class FlowEarlyEndTest {
+
+    private final PluginHarness harness = new PluginHarness();
+
+    private RecordingCallbackContext cancel() {
+        RecordingCallbackContext callback = harness.execute("cancel");
+        assertEquals("OK", callback.lastResult().getStrMessage());
+        return callback;
+    }
+
+    @Test
+    public void cancelDuringPromptIgnoresTheLateResult() {
+        RecordingCallbackContext callback = harness.ask();
+        assertTrue(harness.os.hasPendingRequest());
+        cancel();
+        assertEquals(PermissionStatus.CANCELLED.value(), callback.onlyMessage());
+
+        harness.os.grant();
+        assertEquals(1, callback.results().size());
+        assertEquals(0, callback.droppedCount());
+        assertEquals(PermissionStatus.GRANTED_ALREADY.value(), harness.checkStatus());
+    }
+
+    @Test
+    public void retryWaitsForThePromptOfTheCancelledFlow() {
+        harness.ask();
+        cancel();
+        RecordingCallbackContext retry = harness.ask();
+        // Android would answer a second request right away without a result
+        assertEquals(1, harness.os.requestCount());
+        assertTrue(retry.results().isEmpty());
+
+        // The user denies the prompt of the cancelled flow, after which the retry asks
+        harness.os.deny();
+        assertTrue(retry.results().isEmpty());
+        assertEquals(2, harness.os.requestCount());
+        assertTrue(harness.os.hasPendingRequest());
+
+        // The rationale state is read when the retry asks, after the first denial
+        harness.os.deny();
+        assertEquals(PermissionStatus.DENIED_PERMANENTLY_NEWLY.value(), retry.onlyMessage());
+    }
+
+    @Test
+    public void retryIsGrantedInThePromptOfTheCancelledFlow() {
+        harness.ask();
+        cancel();
+        RecordingCallbackContext retry = harness.ask();
+        harness.os.grant();
+        assertEquals(PermissionStatus.GRANTED_ALREADY.value(), retry.onlyMessage());
+        assertEquals(1, harness.os.requestCount());
+        assertFalse(harness.os.hasPendingRequest());
+    }
+
+    @Test
+    public void nextFlowAfterALateDenial() {
+        harness.ask();
+        cancel();
+        harness.os.deny();
+        // The next flow shows the rationale and tells the second denial is permanent
+        RecordingCallbackContext callback = harness.ask();
+        harness.clickPositive();
+        harness.os.deny();
+        assertEquals(PermissionStatus.DENIED_PERMANENTLY_NEWLY.value(), callback.onlyMessage());
+    }
+
+    @Test
+    public void timeoutDuringPrompt() throws InterruptedException {
+        Object[] args = Arrays.copyOf(PluginHarness.dialogArgs(), 14);
+        args[12] = "";
+        args[13] = 50;
+        RecordingCallbackContext callback = harness.execute("maybeAskPermission", args);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (callback.results().isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(PermissionStatus.TIMEOUT.value(), callback.onlyMessage());
+        assertTrue(harness.os.hasPendingRequest());
+
+        RecordingCallbackContext retry = harness.ask();
+        harness.os.deny();
+        assertEquals(1, callback.results().size());
+        harness.os.grant();
+        assertEquals(PermissionStatus.GRANTED_NEWLY_WITHOUT_RATIONALE.value(), retry.onlyMessage());
+    }
+
+    @Test
+    public void failureEndsTheFlowWithAnError() {
+        Object[] args = PluginHarness.dialogArgs();
+        // Not a number, the parsing throws a RuntimeException in the thread pool
+        args[5] = "dark";
+        RecordingCallbackContext failed = harness.execute("maybeAskPermission", args);
+        assertEquals(PluginResult.Status.ERROR.ordinal(), failed.lastResult().getStatus());
+        assertEquals(1, failed.results().size());
+
+        RecordingCallbackContext next = harness.ask();
+        harness.os.grant();
+        assertEquals(PermissionStatus.GRANTED_NEWLY_WITHOUT_RATIONALE.value(), next.onlyMessage());
+    }
+
+    @Test
+    public void resetDropsTheFlowOfTheOldPage() {
+        harness.os.revokeInSettings(PluginHarness.PERMISSION);
+        harness.ask();
+        harness.os.deny();
+        RecordingCallbackContext gone = harness.ask();
+        assertEquals("Notifications", harness.dialogTitle());
+
+        harness.plugin.onReset();
+        assertNull(harness.dialog());
+        assertTrue(gone.results().isEmpty());
+
+        // The new page starts a flow of its own instead of joining the one of the old page
+        RecordingCallbackContext callback = harness.ask();
+        harness.clickPositive();
+        harness.os.grant();
+        assertEquals(PermissionStatus.GRANTED_NEWLY_AFTER_RATIONALE.value(), callback.onlyMessage());
+        assertTrue(gone.results().isEmpty());
+    }
+}
@@ -0,0 +1,114 @@
+package nl.klaasmaakt.cordova.notifications_permission;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Plays random interleavings of calls, clicks, OS answers, cancels, resumes, settings changes
+ * and page reloads against the real plugin. Whatever the order, a caller gets at most one
+ * result, the OS is never asked while its prompt is showing, and once everything has been
+ * answered every caller of the current page has its result.
+ */
+public class FlowInterleavingFuzzTest {
+
+    private static final int SEEDS = 200;
+    private static final int EVENTS = 60;
+
+    @Test
+    public void randomInterleavings() {
+        for (int seed = 0; seed < SEEDS; seed++) {
+            run(seed);
+        }
+    }
+
+    private static void run(int seed) {
+        Random random = new Random(seed);
+        PluginHarness harness = new PluginHarness();
+        List<RecordingCallbackContext> callbacks = new ArrayList<>();
+        List<RecordingCallbackContext> gone = new ArrayList<>();
+        StringBuilder trace = new StringBuilder("seed " + seed + ":");
+        for (int i = 0; i < EVENTS; i++) {
+            int event = random.nextInt(10);
+            trace.append(' ').append(event);
+            switch (event) {
+                case 0:
+                case 1:
+                    callbacks.add(harness.ask());
+                    break;
+                case 2:
+                    if (harness.dialog() != null) {
+                        harness.clickPositive();
+                    }
+                    break;
+                case 3:
+                    if (harness.dialog() != null) {
+                        harness.clickNegative();
+                    }
+                    break;
+                case 4:
+                    if (harness.os.hasPendingRequest()) {
+                        harness.os.grant();
+                    }
+                    break;
+                case 5:
+                    if (harness.os.hasPendingRequest()) {
+                        harness.os.deny();
+                    }
+                    break;
+                case 6:
+                    harness.execute("cancel");
+                    break;
+                case 7:
+                    harness.resume();
+                    break;
+                case 8:
+                    if (random.nextBoolean()) {
+                        harness.os.revokeInSettings(PluginHarness.PERMISSION);
+                    } else {
+                        harness.os.grantInSettings(PluginHarness.PERMISSION);
+                    }
+                    break;
+                default:
+                    // The page reloads, its callers are gone
+                    harness.plugin.onReset();
+                    gone.addAll(callbacks);
+                    callbacks.clear();
+                    break;
+            }
+            checkAtMostOneResult(trace, callbacks);
+            checkAtMostOneResult(trace, gone);
+        }
+        // Answer everything that is still open
+        for (int i = 0; i < 10 && (harness.dialog() != null || harness.os.hasPendingRequest()); i++) {
+            if (harness.dialog() != null) {
+                harness.clickNegative();
+            }
+            if (harness.os.hasPendingRequest()) {
+                harness.os.deny();
+            }
+        }
+        harness.execute("cancel");
+        harness.resume();
+        checkAtMostOneResult(trace, gone);
+        for (RecordingCallbackContext callbackContext : callbacks) {
+            assertEquals(trace.toString(), 1, callbackContext.results().size());
+        }
+    }
+
+    private static void checkAtMostOneResult(StringBuilder trace, List<RecordingCallbackContext> callbacks) {
+        for (RecordingCallbackContext callbackContext : callbacks) {
+            assertTrue(trace.toString(), callbackContext.results().size() <= 1);
+            assertEquals(trace.toString(), 0, callbackContext.droppedCount());
+            if (!callbackContext.results().isEmpty()) {
+                // ERROR would mean the OS has been asked while its prompt was showing
+                assertNotEquals(trace.toString(), PermissionStatus.ERROR.value(), callbackContext.lastResult().getStrMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package nl.klaasmaakt.cordova.notifications_permission;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+
+/**
+ * FlowState transitions, alone and raced from several threads with the compare-and-set the plugin uses.
+ */
+public class FlowStateTest {
+
+    private static final FlowState.Phase[] PHASES = FlowState.Phase.values();
+    private static final int THREADS = 4;
+    private static final int EVENTS_PER_THREAD = 20000;
+
+    /**
+     * @return A state in the phase, reached through allowed transitions where possible.
+     */
+    private static FlowState inPhase(FlowState.Phase phase) {
+        switch (phase) {
+            case IDLE:
+                return FlowState.IDLE;
+            case SETTINGS:
+                return FlowState.inSettings(false, false);
+            case OS_PROMPT:
+                return FlowState.start(1).toOsPrompt(false, false);
+            case LAST_RESORT_SHOWN:
+                return inPhase(FlowState.Phase.OS_PROMPT).to(phase);
+            case DONE:
+            case RATIONALE_SHOWN:
+                return FlowState.start(1).to(phase);
+            default:
+                return FlowState.start(1);
+        }
+    }
+
+    @Test
+    public void toThrowsExactlyWhenTheTransitionIsNotAllowed() {
+        for (FlowState.Phase from : PHASES) {
+            for (FlowState.Phase to : PHASES) {
+                FlowState flow = inPhase(from);
+                assertEquals(from, flow.phase());
+                try {
+                    FlowState next = flow.to(to);
+                    assertTrue(from + " -> " + to, FlowState.canMove(from, to));
+                    assertEquals(to, next.phase());
+                    assertEquals(flow.id(), next.id());
+                } catch (IllegalStateException e) {
+                    assertTrue(from + " -> " + to, !FlowState.canMove(from, to));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void onlyIdleAndDoneAreInactive() {
+        for (FlowState.Phase phase : PHASES) {
+            boolean inactive = phase == FlowState.Phase.IDLE || phase == FlowState.Phase.DONE;
+            assertEquals(phase.toString(), !inactive, inPhase(phase).isActive());
+        }
+    }
+
+    /**
+     * A transition that won its compare-and-set.
+     */
+    private static final class Move {
+        final long id;
+        final FlowState.Phase from;
+        final FlowState.Phase to;
+
+        Move(long id, FlowState.Phase from, FlowState.Phase to) {
+            this.id = id;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    @Test
+    public void racingEventsMoveEachFlowAlongAllowedTransitionsOnly() throws InterruptedException {
+        AtomicReference<FlowState> current = new AtomicReference<>(FlowState.IDLE);
+        AtomicLong ids = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        List<List<Move>> moves = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            List<Move> own = new ArrayList<>();
+            moves.add(own);
+            Random random = new Random(t);
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < EVENTS_PER_THREAD; i++) {
+                    // A click, an OS result, a deadline or a new call, in any order
+                    FlowState.Phase target = PHASES[1 + random.nextInt(PHASES.length - 1)];
+                    FlowState flow = current.get();
+                    if (!FlowState.canMove(flow.phase(), target)) {
+                        continue;
+                    }
+                    FlowState next = target == FlowState.Phase.STARTING ? FlowState.start(ids.incrementAndGet()) : flow.to(target);
+                    if (current.compareAndSet(flow, next)) {
+                        own.add(new Move(next.id(), flow.phase(), target));
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Map<Long, int[]> startsAndEnds = new HashMap<>();
+        int total = 0;
+        for (List<Move> own : moves) {
+            for (Move move : own) {
+                total++;
+                if (!FlowState.canMove(move.from, move.to)) {
+                    fail("Moved " + move.from + " -> " + move.to);
+                }
+                int[] counts = startsAndEnds.get(move.id);
+                if (counts == null) {
+                    counts = new int[2];
+                    startsAndEnds.put(move.id, counts);
+                }
+                if (move.to == FlowState.Phase.STARTING) {
+                    counts[0]++;
+                }
+                if (move.to == FlowState.Phase.DONE) {
+                    counts[1]++;
+                }
+            }
+        }
+        assertTrue("no flow has run", total > 0);
+        FlowState last = current.get();
+        for (Map.Entry<Long, int[]> entry : startsAndEnds.entrySet()) {
+            assertEquals("starts of flow " + entry.getKey(), 1, entry.getValue()[0]);
+            // Only the flow that is still in flight has not ended
+            boolean inFlight = last.isActive() && last.id() == entry.getKey();
+            assertEquals("ends of flow " + entry.getKey(), inFlight ? 0 : 1, entry.getValue()[1]);
+        }
+    }
+}
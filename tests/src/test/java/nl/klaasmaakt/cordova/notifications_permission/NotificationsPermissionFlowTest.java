@@ -0,0 +1,236 @@
+package nl.klaasmaakt.cordova.notifications_permission;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Intent;
+import android.os.Build;
+import android.os.Bundle;
+import android.provider.Settings;
+import java.util.List;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Scripted permission flows through the real plugin, from the first ask to system settings.
+ */
+public class NotificationsPermissionFlowTest {
+
+    private final PluginHarness harness = new PluginHarness();
+
+    @After
+    public void resetApiLevel() {
+        Build.VERSION.SDK_INT = Build.VERSION_CODES.TIRAMISU;
+    }
+
+    /**
+     * Deny once, so the OS advises a rationale from then on.
+     */
+    private void denyFirstAsk() {
+        RecordingCallbackContext first = harness.ask();
+        harness.os.deny();
+        assertEquals(PermissionStatus.DENIED_NOT_PERMANENTLY_NEWLY.value(), first.onlyMessage());
+    }
+
+    @Test
+    public void firstAskGranted() {
+        assertEquals(PermissionStatus.NOT_DETERMINED.value(), harness.checkStatus());
+        RecordingCallbackContext callback = harness.ask();
+        // No rationale is advised before the first ask, the OS prompt shows right away
+        assertNull(harness.dialog());
+        assertTrue(harness.os.hasPendingRequest());
+        assertTrue(callback.results().isEmpty());
+        harness.os.grant();
+        assertEquals(PermissionStatus.GRANTED_NEWLY_WITHOUT_RATIONALE.value(), callback.onlyMessage());
+        assertEquals(PermissionStatus.GRANTED_ALREADY.value(), harness.checkStatus());
+
+        RecordingCallbackContext again = harness.ask();
+        assertEquals(PermissionStatus.GRANTED_ALREADY.value(), again.onlyMessage());
+        assertEquals(1, harness.os.requestCount());
+    }
+
+    @Test
+    public void firstAskDenied() {
+        denyFirstAsk();
+        assertEquals(PermissionStatus.DENIED_NOT_PERMANENTLY_NEWLY.value(), harness.checkStatus());
+        assertFalse(harness.os.hasPendingRequest());
+    }
+
+    @Test
+    public void rationaleThenGranted() {
+        denyFirstAsk();
+        RecordingCallbackContext callback = harness.ask();
+        assertEquals("Notifications", harness.dialogTitle());
+        assertFalse(harness.os.hasPendingRequest());
+        harness.clickPositive();
+        assertNull(harness.dialog());
+        assertTrue(harness.os.hasPendingRequest());
+        harness.os.grant();
+        assertEquals(PermissionStatus.GRANTED_NEWLY_AFTER_RATIONALE.value(), callback.onlyMessage());
+    }
+
+    @Test
+    public void rationaleDeclined() {
+        denyFirstAsk();
+        RecordingCallbackContext callback = harness.ask();
+        harness.clickNegative();
+        assertEquals(PermissionStatus.DENIED_THROUGH_RATIONALE_DIALOG.value(), callback.onlyMessage());
+        assertFalse(harness.os.hasPendingRequest());
+        assertEquals(1, harness.os.requestCount());
+    }
+
+    @Test
+    public void deniedAgainAfterRationaleIsPermanent() {
+        denyFirstAsk();
+        RecordingCallbackContext callback = harness.ask();
+        harness.clickPositive();
+        harness.os.deny();
+        assertEquals(PermissionStatus.DENIED_PERMANENTLY_NEWLY.value(), callback.onlyMessage());
+        assertFalse(harness.os.wouldPrompt(PluginHarness.PERMISSION));
+        assertEquals(PermissionStatus.DENIED_PERMANENTLY_NEWLY.value(), harness.checkStatus());
+    }
+
+    /**
+     * Deny until the permission is denied permanently, then ask once more so the last resort dialog shows.
+     */
+    private RecordingCallbackContext askUntilLastResort() {
+        denyFirstAsk();
+        RecordingCallbackContext second = harness.ask();
+        harness.clickPositive();
+        harness.os.deny();
+        assertEquals(PermissionStatus.DENIED_PERMANENTLY_NEWLY.value(), second.onlyMessage());
+
+        RecordingCallbackContext callback = harness.ask();
+        // No rationale is advised anymore, the OS denies without showing its prompt
+        harness.os.deny();
+        assertEquals("Notifications are off", harness.dialogTitle());
+        // The last resort dialog sends the result
+        assertTrue(callback.results().isEmpty());
+        return callback;
+    }
+
+    @Test
+    public void permanentDenyThenSettingsGranted() {
+        RecordingCallbackContext callback = askUntilLastResort();
+        harness.clickPositive();
+        List<Intent> started = harness.cordova.startedIntents();
+        assertEquals(1, started.size());
+        assertEquals(Settings.ACTION_ALL_APPS_NOTIFICATION_SETTINGS, started.get(0).getAction());
+        assertTrue(callback.results().isEmpty());
+
+        harness.os.grantInSettings(PluginHarness.PERMISSION);
+        harness.resume();
+        assertEquals(PermissionStatus.GRANTED_NEWLY_AFTER_SETTINGS.value(), callback.onlyMessage());
+        assertEquals(PermissionStatus.GRANTED_ALREADY.value(), harness.checkStatus());
+    }
+
+    @Test
+    public void permanentDenyThenSettingsDenied() {
+        RecordingCallbackContext callback = askUntilLastResort();
+        harness.clickPositive();
+        harness.resume();
+        assertEquals(PermissionStatus.DENIED_PERMANENTLY_ALREADY_AFTER_SETTINGS.value(), callback.onlyMessage());
+        // A later resume does not send anything anymore
+        harness.resume();
+        assertEquals(1, callback.results().size());
+    }
+
+    @Test
+    public void lastResortDeclinedShowsOnlyOnce() {
+        RecordingCallbackContext callback = askUntilLastResort();
+        harness.clickNegative();
+        assertEquals(PermissionStatus.DENIED_THROUGH_LAST_RESORT_DIALOG.value(), callback.onlyMessage());
+
+        RecordingCallbackContext again = harness.ask();
+        harness.os.deny();
+        assertNull(harness.dialog());
+        assertEquals(PermissionStatus.DENIED_PERMANENTLY_ALREADY.value(), again.onlyMessage());
+    }
+
+    @Test
+    public void settingsResultSurvivesProcessDeath() {
+        RecordingCallbackContext callback = askUntilLastResort();
+        harness.clickPositive();
+        Bundle saved = harness.plugin.onSaveInstanceState();
+        assertNotNull(saved);
+
+        // Android kills the process while the user is in settings, the original callback is gone
+        PluginHarness restarted = harness.restart();
+        RecordingCallbackContext resumeCallback = new RecordingCallbackContext();
+        restarted.plugin.onRestoreStateForActivityResult(saved, resumeCallback);
+        restarted.os.grantInSettings(PluginHarness.PERMISSION);
+        restarted.resume();
+        assertEquals(PermissionStatus.GRANTED_NEWLY_AFTER_SETTINGS.value(), resumeCallback.onlyMessage());
+        assertTrue(callback.results().isEmpty());
+    }
+
+    @Test
+    public void askWhileARestoredFlowIsInSettingsGetsItsResult() {
+        askUntilLastResort();
+        harness.clickPositive();
+        Bundle saved = harness.plugin.onSaveInstanceState();
+
+        // The process has been killed in settings and the page asks again before the user is back
+        PluginHarness restarted = harness.restart();
+        restarted.plugin.onRestoreStateForActivityResult(saved, new RecordingCallbackContext());
+        RecordingCallbackContext callback = restarted.ask();
+        assertTrue(callback.results().isEmpty());
+        assertNull(restarted.dialog());
+        restarted.os.grantInSettings(PluginHarness.PERMISSION);
+        restarted.resume();
+        assertEquals(PermissionStatus.GRANTED_NEWLY_AFTER_SETTINGS.value(), callback.onlyMessage());
+        assertEquals(PermissionStatus.GRANTED_ALREADY.value(), restarted.ask().onlyMessage());
+    }
+
+    @Test
+    public void restoredFlowWithoutSavedStateIsReadFromStorage() {
+        askUntilLastResort();
+        harness.clickPositive();
+
+        PluginHarness restarted = harness.restart();
+        RecordingCallbackContext resumeCallback = new RecordingCallbackContext();
+        restarted.plugin.onRestoreStateForActivityResult(new Bundle(), resumeCallback);
+        restarted.os.grantInSettings(PluginHarness.PERMISSION);
+        restarted.resume();
+        assertEquals(PermissionStatus.GRANTED_NEWLY_AFTER_SETTINGS.value(), resumeCallback.onlyMessage());
+    }
+
+    @Test
+    public void coldStartAfterSettingsStartsANewFlow() {
+        askUntilLastResort();
+        harness.clickPositive();
+
+        // The app has been swiped away while the user was in settings, no activity is restored and no resume comes
+        PluginHarness restarted = harness.restart();
+        int requests = restarted.os.requestCount();
+        RecordingCallbackContext callback = restarted.ask();
+        assertEquals(requests + 1, restarted.os.requestCount());
+        restarted.os.deny();
+        // The last resort dialog has been shown already
+        assertNull(restarted.dialog());
+        assertEquals(PermissionStatus.DENIED_PERMANENTLY_ALREADY.value(), callback.onlyMessage());
+    }
+
+    @Test
+    public void notNeededBeforeApiLevel33() {
+        Build.VERSION.SDK_INT = Build.VERSION_CODES.S;
+        assertEquals(PermissionStatus.NOT_NEEDED.value(), harness.ask().onlyMessage());
+        assertEquals(PermissionStatus.NOT_NEEDED.value(), harness.checkStatus());
+        assertEquals(0, harness.os.requestCount());
+    }
+
+    @Test
+    public void flagsArePersisted() {
+        denyFirstAsk();
+        // A new process reads what the first one wrote
+        PluginHarness restarted = harness.restart();
+        assertEquals(PermissionStatus.DENIED_NOT_PERMANENTLY_NEWLY.value(), restarted.checkStatus());
+        RecordingCallbackContext callback = restarted.ask();
+        restarted.clickPositive();
+        restarted.os.deny();
+        assertEquals(PermissionStatus.DENIED_PERMANENTLY_NEWLY.value(), callback.onlyMessage());
+    }
+}
@@ -0,0 +1,96 @@
+package nl.klaasmaakt.cordova.notifications_permission;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.os.Build;
+import org.json.JSONException;
+import org.junit.Test;
+
+/**
+ * NotificationsPermissionState.query from background work, next to what the plugin has sent.
+ */
+public class NotificationsPermissionStateTest {
+
+    private final PluginHarness harness = new PluginHarness();
+
+    private NotificationsPermissionState query() {
+        return NotificationsPermissionState.query(harness.activity);
+    }
+
+    /**
+     * The system state changed, as seen by the next query after the cached one has expired.
+     */
+    private void setNotificationsEnabled(boolean enabled) {
+        harness.activity.notificationManager().enabled = enabled;
+        NotificationsPermissionState.invalidate();
+    }
+
+    @Test
+    public void notNeededBeforeApiLevel33() {
+        Build.VERSION.SDK_INT = Build.VERSION_CODES.S;
+        NotificationsPermissionState state = query();
+        assertEquals(PermissionStatus.NOT_NEEDED, state.status());
+        assertTrue(state.canPostNotifications());
+
+        // Turned off in system settings, which is all there is before Android 13
+        setNotificationsEnabled(false);
+        state = query();
+        assertEquals(PermissionStatus.NOT_NEEDED, state.status());
+        assertFalse(state.areNotificationsEnabled());
+        assertFalse(state.canPostNotifications());
+    }
+
+    @Test
+    public void followsTheStatusesOfThePluginFromApiLevel33() {
+        assertEquals(PermissionStatus.NOT_DETERMINED, query().status());
+        assertFalse(query().canPostNotifications());
+
+        RecordingCallbackContext callback = harness.ask();
+        harness.os.deny();
+        assertEquals(PermissionStatus.DENIED_NOT_PERMANENTLY_NEWLY.value(), callback.onlyMessage());
+        // Sending the status dropped the cached state
+        assertEquals(PermissionStatus.DENIED_NOT_PERMANENTLY_NEWLY, query().status());
+        assertFalse(query().canPostNotifications());
+
+        harness.os.grantInSettings(PluginHarness.PERMISSION);
+        NotificationsPermissionState.invalidate();
+        assertEquals(PermissionStatus.GRANTED_ALREADY, query().status());
+        assertTrue(query().canPostNotifications());
+    }
+
+    @Test
+    public void grantedButTurnedOffForTheApp() {
+        harness.os.grantInSettings(PluginHarness.PERMISSION);
+        setNotificationsEnabled(false);
+        NotificationsPermissionState state = query();
+        assertEquals(PermissionStatus.GRANTED_ALREADY, state.status());
+        assertFalse(state.areNotificationsEnabled());
+        assertFalse(state.canPostNotifications());
+    }
+
+    @Test
+    public void turnedOffChannelLeavesTheAppLevelAlone() throws JSONException {
+        harness.os.grantInSettings(PluginHarness.PERMISSION);
+        harness.activity.notificationManager().channels.add(new NotificationChannel("news", "News", NotificationManager.IMPORTANCE_NONE));
+        NotificationsPermissionState state = query();
+        assertTrue(state.areNotificationsEnabled());
+        assertTrue(state.canPostNotifications());
+        // The channel is reported by getChannelStates
+        assertTrue(new ChannelStateReporter().report(harness.activity, false)
+                .getJSONArray("channels").getJSONObject(0).getBoolean("blocked"));
+    }
+
+    @Test
+    public void stateIsReusedForASecond() {
+        NotificationsPermissionState state = query();
+        harness.activity.notificationManager().enabled = false;
+        assertSame(state, query());
+        NotificationsPermissionState.invalidate();
+        assertFalse(query().areNotificationsEnabled());
+    }
+}
@@ -0,0 +1,136 @@
+package nl.klaasmaakt.cordova.notifications_permission;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.os.Build;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+/**
+ * The stored layout of PermissionAnalytics, and when the plugin writes it.
+ */
+public class PermissionAnalyticsTest {
+
+    @Test
+    public void countersAreStoredByKey() throws JSONException {
+        PermissionAnalytics analytics = new PermissionAnalytics();
+        analytics.countStatus(PermissionStatus.GRANTED_ALREADY);
+        analytics.countPhase(FlowState.Phase.STARTING);
+        FakeStorage storage = new FakeStorage();
+        analytics.persist(storage);
+        assertEquals("status:granted_already=1,transition:none>granted_already=1,phase:STARTING=1", storage.analytics);
+
+        JSONObject drained = new PermissionAnalytics().drain(storage);
+        assertEquals(1, drained.getJSONObject("statuses").getLong("granted_already"));
+        assertEquals(1, drained.getJSONObject("phases").getLong("STARTING"));
+    }
+
+    @Test
+    public void countersSurviveAChangedLayout() throws JSONException {
+        // Written by a version with a status that does not exist anymore, in another order
+        FakeStorage storage = new FakeStorage();
+        storage.analytics = "status:some_old_status=7,phase:STARTING=2,status:granted_already=3,transition:some_old_status>granted_already=1";
+        PermissionAnalytics analytics = new PermissionAnalytics();
+        analytics.countStatus(PermissionStatus.GRANTED_ALREADY);
+        JSONObject drained = analytics.drain(storage);
+        assertEquals(4, drained.getJSONObject("statuses").getLong("granted_already"));
+        assertFalse(drained.getJSONObject("statuses").has("some_old_status"));
+        assertEquals(2, drained.getJSONObject("phases").getLong("STARTING"));
+        assertEquals(1, drained.getJSONObject("transitions").length());
+    }
+
+    @Test
+    public void pauseWritesNothingWhenNothingHasBeenCounted() {
+        PluginHarness harness = new PluginHarness();
+        AtomicInteger created = new AtomicInteger();
+        harness.plugin.setStorageFactory(permission -> {
+            created.incrementAndGet();
+            return new Utils(harness.activity, permission);
+        });
+        int applied = harness.preferences.applyCount();
+        harness.plugin.onPause(false);
+        harness.plugin.onPause(false);
+        assertEquals(applied, harness.preferences.applyCount());
+
+        harness.os.grantInSettings(PluginHarness.PERMISSION);
+        harness.ask();
+        applied = harness.preferences.applyCount();
+        harness.plugin.onPause(false);
+        assertEquals(applied + 1, harness.preferences.applyCount());
+        harness.plugin.onPause(false);
+        harness.plugin.onDestroy();
+        assertEquals(applied + 1, harness.preferences.applyCount());
+        // The storage loaded at startup is reused
+        assertEquals(0, created.get());
+        assertTrue(harness.preferences.getString("analytics", "").contains("status:granted_already=1"));
+    }
+
+    @Test
+    public void nothingIsCountedBeforeApiLevel33() {
+        PluginHarness harness = new PluginHarness();
+        Build.VERSION.SDK_INT = Build.VERSION_CODES.S;
+        AtomicInteger created = new AtomicInteger();
+        harness.plugin.setStorageFactory(permission -> {
+            created.incrementAndGet();
+            return new Utils(harness.activity, permission);
+        });
+        int applied = harness.preferences.applyCount();
+        for (int i = 0; i < PermissionAnalytics.PERSIST_EVERY; i++) {
+            assertEquals(PermissionStatus.NOT_NEEDED.value(), harness.ask().onlyMessage());
+        }
+        harness.plugin.onPause(false);
+        harness.plugin.onDestroy();
+        // The storage has not been opened, let alone written
+        assertEquals(0, created.get());
+        assertEquals(applied, harness.preferences.applyCount());
+    }
+
+    /**
+     * Keeps only the analytics.
+     */
+    private static final class FakeStorage implements PermissionStateStorage {
+        String analytics;
+
+        @Override
+        public int readFlags() {
+            return 0;
+        }
+
+        @Override
+        public String readLastDeniedStatus() {
+            return null;
+        }
+
+        @Override
+        public void write(int flags, String lastDeniedStatus, String promptHistory) {
+        }
+
+        @Override
+        public int readFlowSnapshot() {
+            return 0;
+        }
+
+        @Override
+        public void writeFlowSnapshot(int snapshot) {
+        }
+
+        @Override
+        public String readPromptHistory() {
+            return null;
+        }
+
+        @Override
+        public String readAnalytics() {
+            return analytics;
+        }
+
+        @Override
+        public void writeAnalytics(String analytics) {
+            this.analytics = analytics;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package nl.klaasmaakt.cordova.notifications_permission;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import org.junit.Test;
+
+/**
+ * PermissionDecisionEngine against the classification the plugin did before the engine existed,
+ * for every one of the 256 inputs.
+ */
+public class PermissionDecisionEngineTest {
+
+    private static final int INPUT_COUNT = 256;
+
+    // The STATUS_* codes of the engine
+    private static final PermissionStatus[] STATUSES = new PermissionStatus[]{
+            PermissionStatus.GRANTED_NEWLY_AFTER_RATIONALE,
+            PermissionStatus.GRANTED_NEWLY_WITHOUT_RATIONALE,
+            PermissionStatus.DENIED_PERMANENTLY_ALREADY,
+            PermissionStatus.DENIED_PERMANENTLY_NEWLY,
+            PermissionStatus.DENIED_NOT_PERMANENTLY_ALREADY,
+            PermissionStatus.DENIED_NOT_PERMANENTLY_NEWLY
+    };
+
+    /**
+     * What the original onRequestPermissionResult decided, transcribed branch by branch with the
+     * stored flags and shouldShowRationale read from the input bits.
+     */
+    private static final class Original {
+        PermissionStatus result;
+        boolean showLastResort;
+
+        Original(int input) {
+            boolean granted = (input & PermissionDecisionEngine.IN_GRANTED) != 0;
+            boolean hasPassedRationale = (input & PermissionDecisionEngine.IN_HAS_PASSED_RATIONALE) != 0;
+            boolean beforeClickPermissionRat = (input & PermissionDecisionEngine.IN_BEFORE_CLICK_RATIONALE) != 0;
+            if (granted) {
+                if (hasPassedRationale == true) {
+                    result = PermissionStatus.GRANTED_NEWLY_AFTER_RATIONALE;
+                } else {
+                    result = PermissionStatus.GRANTED_NEWLY_WITHOUT_RATIONALE;
+                }
+                return;
+            }
+            boolean rationaleHasBeenNeededBefore = (input & PermissionDecisionEngine.IN_RATIONALE_HAS_BEEN_NEEDED_BEFORE) != 0;
+            boolean permissionHasBeenGrantedBefore = (input & PermissionDecisionEngine.IN_PERMISSION_HAS_BEEN_GRANTED_BEFORE) != 0;
+            boolean haveWeBeenHereBefore = (input & PermissionDecisionEngine.IN_HAVE_WE_BEEN_HERE_BEFORE) != 0;
+            boolean afterClickPermissionRat = (input & PermissionDecisionEngine.IN_AFTER_CLICK_RATIONALE) != 0;
+            boolean lastResortHasShown = (input & PermissionDecisionEngine.IN_LAST_RESORT_HAS_SHOWN) != 0;
+            if (beforeClickPermissionRat == false && afterClickPermissionRat == false) {
+                if (rationaleHasBeenNeededBefore == true || permissionHasBeenGrantedBefore == true) {
+                    if (!lastResortHasShown) {
+                        showLastResort = true;
+                    }
+                    result = PermissionStatus.DENIED_PERMANENTLY_ALREADY;
+                } else if (haveWeBeenHereBefore == true) {
+                    result = PermissionStatus.DENIED_NOT_PERMANENTLY_ALREADY;
+                } else {
+                    result = PermissionStatus.DENIED_NOT_PERMANENTLY_NEWLY;
+                }
+            } else if (beforeClickPermissionRat == false && afterClickPermissionRat == true) {
+                if (haveWeBeenHereBefore == true) {
+                    result = PermissionStatus.DENIED_NOT_PERMANENTLY_ALREADY;
+                } else {
+                    result = PermissionStatus.DENIED_NOT_PERMANENTLY_NEWLY;
+                }
+            } else if (beforeClickPermissionRat == true && afterClickPermissionRat == false) {
+                result = PermissionStatus.DENIED_PERMANENTLY_NEWLY;
+            } else if (beforeClickPermissionRat == true && afterClickPermissionRat == true) {
+                result = PermissionStatus.DENIED_NOT_PERMANENTLY_ALREADY;
+            }
+        }
+    }
+
+    @Test
+    public void everyInputMatchesTheOriginalBranches() {
+        for (int input = 0; input < INPUT_COUNT; input++) {
+            Original original = new Original(input);
+            int outcome = PermissionDecisionEngine.decide(input);
+            assertEquals("status of input " + input, original.result, STATUSES[PermissionDecisionEngine.status(outcome)]);
+            assertEquals("last resort of input " + input, original.showLastResort, PermissionDecisionEngine.showLastResort(outcome));
+        }
+    }
+
+    @Test
+    public void higherBitsAreIgnored() {
+        for (int input = 0; input < INPUT_COUNT; input++) {
+            assertEquals(PermissionDecisionEngine.decide(input), PermissionDecisionEngine.decide(input | (0x5A << 8)));
+        }
+    }
+
+    @Test
+    public void decidingDoesNotAllocate() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+        long threadId = Thread.currentThread().getId();
+        int sink = 0;
+        // Warm up, so the measured loop runs compiled code
+        for (int i = 0; i < 100000; i++) {
+            sink += decideAll();
+        }
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 1000; i++) {
+            sink += decideAll();
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+        // Leaves room for the measurement itself, far less than one object per decision
+        assertTrue("allocated " + allocated + " bytes, sink " + sink, allocated < 1024);
+    }
+
+    private static int decideAll() {
+        int sum = 0;
+        for (int input = 0; input < INPUT_COUNT; input++) {
+            int outcome = PermissionDecisionEngine.decide(input);
+            sum += PermissionDecisionEngine.status(outcome) + (PermissionDecisionEngine.showLastResort(outcome) ? 1 : 0);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,106 @@
+package nl.klaasmaakt.cordova.notifications_permission;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import android.app.Dialog;
+import android.os.Bundle;
+import androidx.fragment.app.Fragment;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+/**
+ * What PermissionMetrics records, and that recording does not allocate.
+ */
+public class PermissionMetricsTest {
+
+    private final PluginHarness harness = new PluginHarness();
+
+    /**
+     * @return The snapshot of the dialogDisplay phase, or null if it has not been recorded.
+     */
+    private JSONObject dialogDisplay() throws JSONException {
+        JSONObject phases = new JSONObject(harness.execute("getMetrics").lastResult().getMessage()).getJSONObject("phases");
+        return phases.optJSONObject("dialogDisplay");
+    }
+
+    @Test
+    public void dialogDisplayIsRecordedOnceTheDialogIsOnScreen() throws JSONException {
+        harness.ask();
+        harness.os.deny();
+        assertEquals(null, dialogDisplay());
+        harness.ask();
+        assertEquals("Notifications", harness.dialogTitle());
+        assertEquals(1, dialogDisplay().getLong("count"));
+
+        // The activity comes back to the foreground, the dialog starts again
+        Fragment fragment = harness.activity.getSupportFragmentManager().findFragmentByTag("dialog");
+        fragment.onStop();
+        fragment.onStart();
+        assertEquals(1, dialogDisplay().getLong("count"));
+    }
+
+    @Test
+    public void dialogDisplayRunsUntilTheFragmentStarts() throws JSONException {
+        long start = PermissionMetrics.start() - TimeUnit.MILLISECONDS.toNanos(5);
+        DialogConfig config = new DialogConfig(true, "Notifications", "Please", "OK", "No", 0);
+        PermissionsDialogFragment fragment = PermissionsDialogFragment.newInstance(config, harness.plugin.getServiceName() + ":100:rationale", start);
+        // The shared arguments of the config are not touched
+        assertFalse(config.arguments(harness.plugin.getServiceName() + ":100:rationale").containsKey("display_start"));
+        fragment.show(harness.activity.getSupportFragmentManager().beginTransaction(), "dialog");
+        JSONObject dialogDisplay = dialogDisplay();
+        assertEquals(1, dialogDisplay.getLong("count"));
+        assertTrue(dialogDisplay.getLong("totalNanos") >= TimeUnit.MILLISECONDS.toNanos(5));
+    }
+
+    @Test
+    public void recreatedDialogIsNotTimed() throws JSONException {
+        DialogConfig config = new DialogConfig(true, "Notifications", "Please", "OK", "No", 0);
+        Bundle saved = new Bundle(config.arguments(harness.plugin.getServiceName() + ":100:rationale"));
+        saved.putLong("display_start", PermissionMetrics.start());
+        // Android recreates the dialog from arguments saved before it was on screen
+        PermissionsDialogFragment recreated = new PermissionsDialogFragment() {
+            @Override
+            public Dialog onCreateDialog(Bundle savedInstanceState) {
+                return super.onCreateDialog(new Bundle());
+            }
+        };
+        recreated.setArguments(saved);
+        recreated.show(harness.activity.getSupportFragmentManager().beginTransaction(), "dialog");
+        assertEquals(null, dialogDisplay());
+    }
+
+    @Test
+    public void recordingDoesNotAllocate() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+        PermissionMetrics metrics = new PermissionMetrics();
+        long threadId = Thread.currentThread().getId();
+        // Warm up, so the measured loop runs compiled code
+        for (int i = 0; i < 100000; i++) {
+            recordAll(metrics);
+        }
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 1000; i++) {
+            recordAll(metrics);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+        // Leaves room for the measurement itself, far less than one object per record
+        assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    private static void recordAll(PermissionMetrics metrics) {
+        long start = PermissionMetrics.start();
+        for (int phase = PermissionMetrics.PHASE_ARG_PARSE; phase <= PermissionMetrics.PHASE_SETTINGS_ROUND_TRIP; phase++) {
+            metrics.record(phase, start);
+        }
+        metrics.count(PermissionStatus.GRANTED_ALREADY);
+    }
+}
@@ -0,0 +1,102 @@
+package nl.klaasmaakt.cordova.notifications_permission;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.cordova.PluginResult;
+import org.junit.Test;
+
+/**
+ * PermissionRequestCoalescer under many threads joining and resolving at once: every caller
+ * gets exactly one result, and the callers of one flow get the result of its leader.
+ */
+public class PermissionRequestCoalescerTest {
+
+    private static final int THREADS = 8;
+    private static final int CALLS_PER_THREAD = 5000;
+
+    @Test
+    public void waitersGetTheResultOfTheirFlow() {
+        PermissionRequestCoalescer coalescer = new PermissionRequestCoalescer();
+        RecordingCallbackContext leader = new RecordingCallbackContext();
+        RecordingCallbackContext first = new RecordingCallbackContext();
+        RecordingCallbackContext second = new RecordingCallbackContext();
+        assertTrue(coalescer.join(leader));
+        assertFalse(coalescer.join(first));
+        assertFalse(coalescer.join(second));
+        coalescer.resolve(new PluginResult(PluginResult.Status.OK, "done"));
+        assertEquals("done", leader.onlyMessage());
+        assertEquals("done", first.onlyMessage());
+        assertEquals("done", second.onlyMessage());
+        assertFalse(coalescer.isInFlight());
+    }
+
+    @Test
+    public void resetDropsTheCallersAndLetsANewFlowStart() {
+        PermissionRequestCoalescer coalescer = new PermissionRequestCoalescer();
+        RecordingCallbackContext gone = new RecordingCallbackContext();
+        assertTrue(coalescer.join(gone));
+        coalescer.reset();
+        assertFalse(coalescer.isInFlight());
+
+        RecordingCallbackContext next = new RecordingCallbackContext();
+        assertTrue(coalescer.join(next));
+        coalescer.resolve(new PluginResult(PluginResult.Status.OK, "next"));
+        assertTrue(gone.results().isEmpty());
+        assertEquals("next", next.onlyMessage());
+    }
+
+    @Test
+    public void everyCallerGetsExactlyOneResultUnderContention() throws InterruptedException {
+        PermissionRequestCoalescer coalescer = new PermissionRequestCoalescer();
+        AtomicInteger leaders = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<List<RecordingCallbackContext>> callbacks = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            List<RecordingCallbackContext> own = new ArrayList<>();
+            callbacks.add(own);
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < CALLS_PER_THREAD; i++) {
+                    RecordingCallbackContext callbackContext = new RecordingCallbackContext();
+                    own.add(callbackContext);
+                    if (coalescer.join(callbackContext)) {
+                        // The leader resolves its flow with a result of its own
+                        coalescer.resolve(new PluginResult(PluginResult.Status.OK, "flow" + leaders.incrementAndGet()));
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        // Every leader resolved its flow right after starting it
+        assertFalse(coalescer.isInFlight());
+
+        Set<String> flows = new HashSet<>();
+        for (List<RecordingCallbackContext> own : callbacks) {
+            assertEquals(CALLS_PER_THREAD, own.size());
+            for (RecordingCallbackContext callbackContext : own) {
+                flows.add(callbackContext.onlyMessage());
+                assertEquals(0, callbackContext.droppedCount());
+            }
+        }
+        // Every flow that has been started has sent its result to at least its leader
+        assertEquals(leaders.get(), flows.size());
+    }
+}
@@ -0,0 +1,56 @@
+package nl.klaasmaakt.cordova.notifications_permission;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * PermissionStateStore writes everything that changed in one SharedPreferences batch.
+ */
+public class PermissionStateStoreTest {
+
+    private final PluginHarness harness = new PluginHarness();
+
+    @Test
+    public void flushAppliesOnce() {
+        PermissionStateStore store = new PermissionStateStore(new Utils(harness.activity, null));
+        int applied = harness.preferences.applyCount();
+        store.saveHaveWeBeenHereBefore();
+        store.saveLastDeniedStatus(PermissionStatus.DENIED_NOT_PERMANENTLY_NEWLY);
+        store.recordPrompt(1000, PermissionStatus.DENIED_NOT_PERMANENTLY_NEWLY);
+        store.flush();
+        assertEquals(applied + 1, harness.preferences.applyCount());
+        // Nothing changed since
+        store.flush();
+        assertEquals(applied + 1, harness.preferences.applyCount());
+
+        PermissionStateStore reloaded = new PermissionStateStore(new Utils(harness.activity, null));
+        assertTrue(reloaded.getHaveWeBeenHereBefore());
+        assertEquals(PermissionStatus.DENIED_NOT_PERMANENTLY_NEWLY, reloaded.getLastDeniedStatus());
+        assertEquals(PermissionStatus.DENIED_NOT_PERMANENTLY_NEWLY, reloaded.getLastPromptStatus());
+    }
+
+    @Test
+    public void historyAloneIsWrittenAndKeepsTheRest() {
+        PermissionStateStore store = new PermissionStateStore(new Utils(harness.activity, null));
+        store.saveLastDeniedStatus(PermissionStatus.DENIED_PERMANENTLY_NEWLY);
+        store.flush();
+        int applied = harness.preferences.applyCount();
+        store.recordPrompt(2000, PermissionStatus.GRANTED_ALREADY);
+        store.flush();
+        assertEquals(applied + 1, harness.preferences.applyCount());
+
+        PermissionStateStore reloaded = new PermissionStateStore(new Utils(harness.activity, null));
+        assertEquals(PermissionStatus.DENIED_PERMANENTLY_NEWLY, reloaded.getLastDeniedStatus());
+        assertEquals(PermissionStatus.GRANTED_ALREADY, reloaded.getLastPromptStatus());
+    }
+
+    @Test
+    public void deniedFlowAppliesOnce() {
+        harness.ask();
+        int applied = harness.preferences.applyCount();
+        harness.os.deny();
+        assertEquals(applied + 1, harness.preferences.applyCount());
+    }
+}
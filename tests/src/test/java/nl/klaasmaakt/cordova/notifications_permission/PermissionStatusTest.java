@@ -0,0 +1,91 @@
+package nl.klaasmaakt.cordova.notifications_permission;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.Test;
+
+/**
+ * PermissionStatus maps onto the constants of www/NotificationsPermission.js, and hands out shared results.
+ */
+public class PermissionStatusTest {
+
+    // A status constant in www/NotificationsPermission.js, e.g. GRANTED_ALREADY: "granted_already",
+    private static final Pattern JS_CONSTANT = Pattern.compile("^\\s*([A-Z_]+): \"([a-z_]+)\",", Pattern.MULTILINE);
+    // values() copies the array on every call
+    private static final PermissionStatus[] STATUSES = PermissionStatus.values();
+
+    @Test
+    public void valuesMatchTheJavaScriptConstants() throws IOException {
+        String js = new String(Files.readAllBytes(Paths.get("../www/NotificationsPermission.js")), StandardCharsets.UTF_8);
+        Map<String, String> constants = new HashMap<>();
+        Matcher matcher = JS_CONSTANT.matcher(js);
+        while (matcher.find()) {
+            constants.put(matcher.group(1), matcher.group(2));
+        }
+        // Only returned by the JavaScript side
+        assertEquals("not_android", constants.remove("NOT_ANDROID"));
+        assertEquals(constants.size(), PermissionStatus.values().length);
+        for (PermissionStatus status : PermissionStatus.values()) {
+            assertEquals(status.name(), constants.get(status.name()), status.value());
+            assertSame(status, PermissionStatus.fromValue(status.value()));
+        }
+    }
+
+    @Test
+    public void resultsAreSharedAndCannotBeChanged() {
+        for (PermissionStatus status : PermissionStatus.values()) {
+            assertSame(status.result(), status.result());
+            assertFalse(status.result().getKeepCallback());
+            assertTrue(status.keepCallbackResult().getKeepCallback());
+            assertEquals(status.value(), status.result().getStrMessage());
+            try {
+                status.result().setKeepCallback(true);
+                throw new AssertionError("The shared result of " + status + " has been changed");
+            } catch (UnsupportedOperationException expected) {
+                assertFalse(status.result().getKeepCallback());
+            }
+        }
+    }
+
+    @Test
+    public void gettingAResultDoesNotAllocate() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+        long threadId = Thread.currentThread().getId();
+        int sink = 0;
+        // Warm up, so the measured loop runs compiled code
+        for (int i = 0; i < 100000; i++) {
+            sink += encodeAll();
+        }
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 1000; i++) {
+            sink += encodeAll();
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+        // Leaves room for the measurement itself, far less than one object per result
+        assertTrue("allocated " + allocated + " bytes, sink " + sink, allocated < 1024);
+    }
+
+    private static int encodeAll() {
+        int length = 0;
+        for (PermissionStatus status : STATUSES) {
+            length += status.result().getMessage().length() + status.keepCallbackResult().getMessage().length();
+        }
+        return length;
+    }
+}
@@ -0,0 +1,80 @@
+package nl.klaasmaakt.cordova.notifications_permission;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import org.apache.cordova.PluginResult;
+import org.junit.Test;
+
+/**
+ * Watchers get the changes of the permission, and a last result that ends their callback when they are stopped.
+ */
+public class PermissionWatchTest {
+
+    private final PluginHarness harness = new PluginHarness();
+
+    private RecordingCallbackContext watch() {
+        RecordingCallbackContext watcher = harness.execute("watchPermission");
+        assertEquals(PermissionStatus.NOT_DETERMINED.value(), watcher.lastResult().getStrMessage());
+        assertTrue(watcher.lastResult().getKeepCallback());
+        return watcher;
+    }
+
+    /**
+     * Checks the watcher has been ended with CANCELLED, and gets nothing after that.
+     */
+    private void assertStopped(RecordingCallbackContext watcher) {
+        PluginResult last = watcher.lastResult();
+        assertEquals(PermissionStatus.CANCELLED.value(), last.getStrMessage());
+        assertFalse(last.getKeepCallback());
+        int count = watcher.results().size();
+        harness.os.grantInSettings(PluginHarness.PERMISSION);
+        harness.resume();
+        harness.mainHandler.runAll();
+        assertEquals(count, watcher.results().size());
+        assertEquals(0, watcher.droppedCount());
+        assertEquals(0, harness.mainHandler.pendingCount());
+    }
+
+    @Test
+    public void changesAreReported() {
+        RecordingCallbackContext watcher = watch();
+        harness.os.grantInSettings(PluginHarness.PERMISSION);
+        harness.resume();
+        harness.resume();
+        harness.mainHandler.runAll();
+        assertEquals(Arrays.asList(PermissionStatus.NOT_DETERMINED.value(), PermissionStatus.GRANTED_ALREADY.value()), watcher.messages());
+        assertTrue(watcher.lastResult().getKeepCallback());
+    }
+
+    @Test
+    public void unwatchEndsEveryWatcher() {
+        RecordingCallbackContext first = watch();
+        RecordingCallbackContext second = watch();
+        RecordingCallbackContext unwatch = harness.execute("unwatchPermission");
+        assertEquals(1, unwatch.results().size());
+        assertStopped(first);
+        assertStopped(second);
+        assertEquals(2, first.results().size());
+    }
+
+    @Test
+    public void resetEndsTheWatchers() {
+        RecordingCallbackContext watcher = watch();
+        harness.resume();
+        harness.plugin.onReset();
+        assertStopped(watcher);
+    }
+
+    @Test
+    public void destroyEndsTheWatchers() {
+        RecordingCallbackContext watcher = watch();
+        harness.plugin.onDestroy();
+        assertStopped(watcher);
+        // Stopping again sends nothing more
+        harness.execute("unwatchPermission");
+        assertEquals(2, watcher.results().size());
+    }
+}
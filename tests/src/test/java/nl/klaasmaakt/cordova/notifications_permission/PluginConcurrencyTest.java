@@ -0,0 +1,79 @@
+package nl.klaasmaakt.cordova.notifications_permission;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Many bridge calls at once, on a real thread pool: they share one flow and one OS prompt.
+ */
+public class PluginConcurrencyTest {
+
+    private static final int CALLERS = 16;
+    private static final int ROUNDS = 50;
+
+    private final ExecutorService threadPool = Executors.newFixedThreadPool(4);
+
+    @After
+    public void shutDown() {
+        threadPool.shutdownNow();
+    }
+
+    private static void await(String what, BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Timed out waiting for " + what);
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void concurrentAsksShareOneFlow() throws InterruptedException {
+        PluginHarness harness = new PluginHarness(threadPool);
+        for (int round = 0; round < ROUNDS; round++) {
+            harness.os.revokeInSettings(PluginHarness.PERMISSION);
+            CountDownLatch start = new CountDownLatch(1);
+            List<RecordingCallbackContext> callbacks = new ArrayList<>();
+            List<Thread> bridges = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++) {
+                Thread bridge = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    RecordingCallbackContext callbackContext = harness.ask();
+                    synchronized (callbacks) {
+                        callbacks.add(callbackContext);
+                    }
+                });
+                bridges.add(bridge);
+                bridge.start();
+            }
+            start.countDown();
+            for (Thread bridge : bridges) {
+                bridge.join();
+            }
+            // Every caller has joined the flow before the OS answers
+            await("the OS prompt", harness.os::hasPendingRequest);
+            harness.os.grant();
+            assertEquals(round + 1, harness.os.requestCount());
+            for (RecordingCallbackContext callbackContext : callbacks) {
+                assertEquals(PermissionStatus.GRANTED_NEWLY_WITHOUT_RATIONALE.value(), callbackContext.onlyMessage());
+            }
+        }
+        threadPool.shutdown();
+        assertTrue(threadPool.awaitTermination(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,233 @@
+package nl.klaasmaakt.cordova.notifications_permission;
+
+import android.Manifest;
+import android.content.Context;
+import android.content.DialogInterface;
+import android.os.Build;
+import android.view.View;
+import androidx.appcompat.app.AlertDialog;
+import androidx.fragment.app.DialogFragment;
+import androidx.fragment.app.Fragment;
+import java.util.concurrent.ExecutorService;
+import org.apache.cordova.CordovaPreferences;
+import org.apache.cordova.CordovaWebView;
+import org.apache.cordova.PluginResult;
+import org.json.JSONArray;
+import org.json.JSONException;
+
+/**
+ * Runs the real NotificationsPermission on the fake OS, activity, storage and main thread,
+ * and plays the user: tapping dialog buttons, answering the OS prompt, coming back from settings.
+ */
+final class PluginHarness {
+
+    static final String PERMISSION = Manifest.permission.POST_NOTIFICATIONS;
+    static final String SERVICE_NAME = "NotificationsPermission";
+    // Tag of the dialog fragments of the plugin
+    private static final String DIALOG_ID = "dialog";
+    // Theme.DeviceDefault.Dialog.Alert
+    static final String THEME = "16974545";
+
+    final FakeSharedPreferences preferences;
+    final FakePermissionOracle os;
+    final FakeActivity activity;
+    final FakeCordova cordova;
+    final FakeHandler mainHandler = new FakeHandler();
+    final NotificationsPermission plugin;
+    // The id of the view of the WebView
+    private final int mViewId;
+    // How long loading the storage takes, like SharedPreferences read from a slow disk
+    private final long mStorageLoadMillis;
+    // The thread that loaded the storage, null until it has been loaded
+    volatile Thread storageLoadThread;
+
+    /**
+     * A harness of which the thread pool runs everything right away, on the thread that asks.
+     */
+    PluginHarness() {
+        this(FakeCordova.directExecutor());
+    }
+
+    PluginHarness(ExecutorService threadPool) {
+        this(threadPool, 0);
+    }
+
+    /**
+     * @param storageLoadMillis How long loading the storage takes.
+     */
+    PluginHarness(ExecutorService threadPool, long storageLoadMillis) {
+        this(new FakeSharedPreferences(), new FakePermissionOracle(), null, NoWebView.WEB_VIEW_ID, threadPool, storageLoadMillis);
+    }
+
+    /**
+     * @param activity The activity of the WebView, null for a new one.
+     * @param viewId   The id of the view of the WebView.
+     */
+    private PluginHarness(FakeSharedPreferences preferences, FakePermissionOracle os, FakeActivity activity, int viewId,
+                          ExecutorService threadPool, long storageLoadMillis) {
+        Build.VERSION.SDK_INT = Build.VERSION_CODES.TIRAMISU;
+        NotificationsPermissionState.invalidate();
+        this.preferences = preferences;
+        this.os = os;
+        mViewId = viewId;
+        mStorageLoadMillis = storageLoadMillis;
+        this.activity = activity == null ? new FakeActivity(preferences, os) : activity;
+        cordova = new FakeCordova(this.activity, os, threadPool);
+        plugin = new NotificationsPermission();
+        plugin.setPermissionOracle(os);
+        plugin.setMainHandler(mainHandler);
+        plugin.setStorageFactory(permission -> {
+            if (mStorageLoadMillis > 0) {
+                try {
+                    Thread.sleep(mStorageLoadMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            storageLoadThread = Thread.currentThread();
+            return new Utils(this.activity, permission);
+        });
+        plugin.privateInitialize(SERVICE_NAME, cordova, new NoWebView(this.activity, viewId), new CordovaPreferences());
+    }
+
+    /**
+     * @return A new harness on the same storage and OS, as after Android killed the process and started it again.
+     */
+    PluginHarness restart() {
+        return restart(cordova.getThreadPool(), mStorageLoadMillis);
+    }
+
+    /**
+     * @param storageLoadMillis How long loading the storage takes in the new process.
+     * @return A new harness on the same storage and OS, with its own thread pool.
+     */
+    PluginHarness restart(ExecutorService threadPool, long storageLoadMillis) {
+        return new PluginHarness(preferences, os, null, mViewId, threadPool, storageLoadMillis);
+    }
+
+    /**
+     * @param viewId The id of the view of the other WebView, View.NO_ID for none.
+     * @return A harness of the plugin of another WebView in the same activity, on the same storage and OS.
+     */
+    PluginHarness inSameActivity(int viewId) {
+        return new PluginHarness(preferences, os, activity, viewId, cordova.getThreadPool(), mStorageLoadMillis);
+    }
+
+    /**
+     * @return The arguments www/NotificationsPermission.js sends for a rationale and a last resort dialog.
+     */
+    static Object[] dialogArgs() {
+        return new Object[]{
+                "true", "Notifications", "We would like to send you notifications.", "OK", "Not now", THEME,
+                "true", "Notifications are off", "Turn them on in settings.", "Settings", "No thanks", THEME};
+    }
+
+    /**
+     * Call an action the way the Cordova bridge does.
+     *
+     * @return The callback the results are sent to.
+     */
+    RecordingCallbackContext execute(String action, Object... args) {
+        RecordingCallbackContext callbackContext = new RecordingCallbackContext();
+        JSONArray jsonArgs = new JSONArray();
+        for (Object arg : args) {
+            jsonArgs.put(arg);
+        }
+        try {
+            if (!plugin.execute(action, jsonArgs, callbackContext)) {
+                throw new AssertionError("Unknown action " + action);
+            }
+        } catch (JSONException e) {
+            throw new AssertionError(e);
+        }
+        return callbackContext;
+    }
+
+    /**
+     * maybeAskPermission with a rationale and a last resort dialog.
+     */
+    RecordingCallbackContext ask() {
+        return execute("maybeAskPermission", dialogArgs());
+    }
+
+    /**
+     * @return The rationale or last resort dialog that is showing, or null.
+     */
+    AlertDialog dialog() {
+        Fragment fragment = activity.getSupportFragmentManager().findFragmentByTag(DIALOG_ID);
+        if (!(fragment instanceof DialogFragment)) {
+            return null;
+        }
+        AlertDialog dialog = (AlertDialog) ((DialogFragment) fragment).getDialog();
+        return dialog != null && dialog.isShowing() ? dialog : null;
+    }
+
+    /**
+     * @return The title of the dialog that is showing, or null.
+     */
+    String dialogTitle() {
+        AlertDialog dialog = dialog();
+        return dialog == null ? null : String.valueOf(dialog.getTitle());
+    }
+
+    void clickPositive() {
+        click(DialogInterface.BUTTON_POSITIVE);
+    }
+
+    void clickNegative() {
+        click(DialogInterface.BUTTON_NEGATIVE);
+    }
+
+    private void click(int which) {
+        AlertDialog dialog = dialog();
+        if (dialog == null) {
+            throw new AssertionError("No dialog is showing");
+        }
+        dialog.getButton(which).performClick();
+    }
+
+    /**
+     * The activity comes to the foreground, e.g. when the user comes back from system settings.
+     */
+    void resume() {
+        plugin.onResume(false);
+    }
+
+    /**
+     * The status the plugin would return right now without asking.
+     */
+    String checkStatus() {
+        return execute("checkStatus").onlyMessage();
+    }
+
+    /**
+     * The plugin never sends results through the WebView in these tests, callbacks record them.
+     */
+    private static final class NoWebView implements CordovaWebView {
+        // The id CordovaActivity gives its WebView
+        private static final int WEB_VIEW_ID = 100;
+
+        private final Context mContext;
+        private final View mView = new View();
+
+        NoWebView(Context context, int viewId) {
+            mContext = context;
+            mView.setId(viewId);
+        }
+
+        @Override
+        public View getView() {
+            return mView;
+        }
+
+        @Override
+        public Context getContext() {
+            return mContext;
+        }
+
+        @Override
+        public void sendPluginResult(PluginResult cr, String callbackId) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package nl.klaasmaakt.cordova.notifications_permission;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import androidx.appcompat.app.AlertDialog;
+import org.junit.Test;
+
+/**
+ * prewarmDialogs builds the dialogs up front, and every later dialog with the same content shows them.
+ */
+public class PrewarmDialogsTest {
+
+    private final PluginHarness harness = new PluginHarness();
+
+    /**
+     * Deny once, so the next ask shows the rationale dialog.
+     */
+    private static void denyFirstAsk(PluginHarness harness) {
+        harness.ask();
+        harness.os.deny();
+    }
+
+    /**
+     * Ask, and deny through the rationale dialog.
+     *
+     * @return The rationale dialog that has been shown.
+     */
+    private static AlertDialog showAndDenyRationale(PluginHarness harness, Object... args) {
+        RecordingCallbackContext callback = harness.execute("maybeAskPermission", args);
+        AlertDialog dialog = harness.dialog();
+        harness.clickNegative();
+        assertEquals(PermissionStatus.DENIED_THROUGH_RATIONALE_DIALOG.value(), callback.onlyMessage());
+        return dialog;
+    }
+
+    @Test
+    public void preparedDialogIsShownEveryTime() {
+        harness.execute("prewarmDialogs", PluginHarness.dialogArgs());
+        denyFirstAsk(harness);
+        AlertDialog first = showAndDenyRationale(harness, PluginHarness.dialogArgs());
+        AlertDialog second = showAndDenyRationale(harness, PluginHarness.dialogArgs());
+        assertSame(first, second);
+
+        // Its buttons reach the plugin through any fragment that shows it
+        RecordingCallbackContext callback = harness.ask();
+        assertSame(first, harness.dialog());
+        harness.clickPositive();
+        harness.os.grant();
+        assertEquals(PermissionStatus.GRANTED_NEWLY_AFTER_RATIONALE.value(), callback.onlyMessage());
+    }
+
+    @Test
+    public void changedContentIsBuiltEveryTime() {
+        harness.execute("prewarmDialogs", PluginHarness.dialogArgs());
+        denyFirstAsk(harness);
+        Object[] changed = PluginHarness.dialogArgs();
+        changed[1] = "Stay informed";
+        AlertDialog first = showAndDenyRationale(harness, changed);
+        assertEquals("Stay informed", String.valueOf(first.getTitle()));
+        assertNotSame(first, showAndDenyRationale(harness, changed));
+    }
+
+    @Test
+    public void withoutPrewarmEveryDialogIsBuilt() {
+        denyFirstAsk(harness);
+        assertNotSame(showAndDenyRationale(harness, PluginHarness.dialogArgs()), showAndDenyRationale(harness, PluginHarness.dialogArgs()));
+    }
+
+    @Test
+    public void destroyingTheOldInstanceKeepsTheDialogsOfTheNewOne() {
+        denyFirstAsk(harness);
+        harness.execute("prewarmDialogs", PluginHarness.dialogArgs());
+        PluginHarness restarted = harness.restart();
+        restarted.execute("prewarmDialogs", PluginHarness.dialogArgs());
+        harness.plugin.onDestroy();
+        assertSame(showAndDenyRationale(restarted, PluginHarness.dialogArgs()), showAndDenyRationale(restarted, PluginHarness.dialogArgs()));
+
+        restarted.plugin.onDestroy();
+        PluginHarness next = restarted.restart();
+        assertNotSame(showAndDenyRationale(next, PluginHarness.dialogArgs()), showAndDenyRationale(next, PluginHarness.dialogArgs()));
+    }
+
+    @Test
+    public void destroyReleasesThePreparedDialogs() {
+        denyFirstAsk(harness);
+        harness.execute("prewarmDialogs", PluginHarness.dialogArgs());
+        harness.ask();
+        String callbackId = harness.activity.getSupportFragmentManager().findFragmentByTag("dialog").getArguments().getString("callback_id");
+        harness.clickNegative();
+        assertTrue(PermissionsDialogFragment.isPrepared(callbackId));
+
+        // The prepared dialog keeps the activity until the plugin is destroyed
+        harness.plugin.onDestroy();
+        assertFalse(PermissionsDialogFragment.isPrepared(callbackId));
+    }
+}
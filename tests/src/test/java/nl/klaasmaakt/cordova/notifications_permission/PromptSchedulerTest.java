@@ -0,0 +1,145 @@
+package nl.klaasmaakt.cordova.notifications_permission;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.EnumSet;
+import java.util.Map;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+/**
+ * The backoff windows of PromptScheduler over a PromptHistory, and maybeAskPermission while one is active.
+ */
+public class PromptSchedulerTest {
+
+    private static final long MINUTE = 60000;
+    private static final PromptScheduler SCHEDULER = new PromptScheduler(MINUTE, 2, 5 * MINUTE,
+            EnumSet.of(PermissionStatus.DENIED_NOT_PERMANENTLY_NEWLY, PermissionStatus.DENIED_THROUGH_RATIONALE_DIALOG));
+
+    @Test
+    public void windowGrowsWithEveryDenialInARowUpToTheMaximum() {
+        PromptHistory history = new PromptHistory();
+        assertEquals(0, SCHEDULER.cooldownEnd(history));
+        long[] windows = {MINUTE, 2 * MINUTE, 4 * MINUTE, 5 * MINUTE, 5 * MINUTE};
+        for (int i = 0; i < windows.length; i++) {
+            long time = 1000000 + i * 10 * MINUTE;
+            history.add(time, PermissionStatus.DENIED_THROUGH_RATIONALE_DIALOG);
+            assertEquals(time + windows[i], SCHEDULER.cooldownEnd(history));
+            assertTrue(SCHEDULER.isCoolingDown(history, time + windows[i] - 1));
+            assertFalse(SCHEDULER.isCoolingDown(history, time + windows[i]));
+        }
+    }
+
+    @Test
+    public void otherOutcomeEndsTheRun() {
+        PromptHistory history = new PromptHistory();
+        history.add(1000, PermissionStatus.DENIED_NOT_PERMANENTLY_NEWLY);
+        history.add(2000, PermissionStatus.DENIED_NOT_PERMANENTLY_NEWLY);
+        history.add(3000, PermissionStatus.GRANTED_NEWLY_WITHOUT_RATIONALE);
+        assertEquals(0, SCHEDULER.cooldownEnd(history));
+        // Only the denials after it count
+        history.add(4000, PermissionStatus.DENIED_THROUGH_RATIONALE_DIALOG);
+        assertEquals(4000 + MINUTE, SCHEDULER.cooldownEnd(history));
+        assertEquals(0, PromptScheduler.DISABLED.cooldownEnd(history));
+    }
+
+    @Test
+    public void clockSetBackwardsDoesNotHoldBackAsking() {
+        PromptHistory history = new PromptHistory();
+        history.add(10 * MINUTE, PermissionStatus.DENIED_NOT_PERMANENTLY_NEWLY);
+        assertTrue(SCHEDULER.isCoolingDown(history, 10 * MINUTE));
+        assertFalse(SCHEDULER.isCoolingDown(history, 10 * MINUTE - 1));
+        assertFalse(SCHEDULER.isCoolingDown(new PromptHistory(), 0));
+    }
+
+    @Test
+    public void optionsAreValidated() throws JSONException {
+        PromptScheduler scheduler = PromptScheduler.fromJson(new JSONObject().put("cooldownMs", MINUTE));
+        PromptHistory history = new PromptHistory();
+        history.add(0, PermissionStatus.DENIED_THROUGH_LAST_RESORT_DIALOG);
+        history.add(1, PermissionStatus.DENIED_THROUGH_LAST_RESORT_DIALOG);
+        // Without maxCooldownMs the window does not grow
+        assertEquals(1 + MINUTE, scheduler.cooldownEnd(history));
+        assertInvalid(new JSONObject().put("cooldownMs", MINUTE).put("maxCooldownMs", MINUTE - 1));
+        assertInvalid(new JSONObject().put("cooldownMs", MINUTE).put("backoffFactor", 0.5));
+        assertInvalid(new JSONObject().put("cooldownMs", MINUTE).put("statuses", new JSONArray().put("no_such_status")));
+        assertInvalid(new JSONObject());
+    }
+
+    private static void assertInvalid(JSONObject options) {
+        try {
+            PromptScheduler.fromJson(options);
+            throw new AssertionError("Accepted " + options);
+        } catch (JSONException expected) {
+            // Rejected
+        }
+    }
+
+    @Test
+    public void historyKeepsTheLatestOutcomesWhenItWrapsAround() {
+        PromptHistory history = new PromptHistory();
+        int added = PromptHistory.CAPACITY + 3;
+        for (int i = 0; i < added; i++) {
+            history.add(i, PermissionStatus.DENIED_NOT_PERMANENTLY_NEWLY);
+        }
+        assertEquals(PromptHistory.CAPACITY, history.size());
+        for (int age = 0; age < PromptHistory.CAPACITY; age++) {
+            assertEquals(added - 1 - age, history.time(age));
+        }
+        try {
+            history.time(PromptHistory.CAPACITY);
+            throw new AssertionError("Read past the oldest outcome");
+        } catch (IndexOutOfBoundsException expected) {
+            // Overwritten
+        }
+
+        PromptHistory decoded = PromptHistory.decode(history.encode());
+        assertEquals(history.encode(), decoded.encode());
+        assertEquals(added - 1, decoded.time(0));
+        assertEquals(added - PromptHistory.CAPACITY, decoded.time(PromptHistory.CAPACITY - 1));
+    }
+
+    @Test
+    public void unreadableEntriesAreSkipped() {
+        PromptHistory history = PromptHistory.decode("1:denied_not_permanently_newly,x:granted_already,2:no_such_status,:granted_already,3");
+        assertEquals(1, history.size());
+        assertEquals(PermissionStatus.DENIED_NOT_PERMANENTLY_NEWLY, history.status(0));
+        assertEquals(0, PromptHistory.decode(null).size());
+    }
+
+    @Test
+    public void askWhileCoolingDownAnswersRightAway() throws JSONException {
+        PluginHarness harness = new PluginHarness();
+        harness.execute("configureBackoff", new JSONObject().put("cooldownMs", MINUTE));
+        RecordingCallbackContext first = harness.ask();
+        harness.os.deny();
+        assertEquals(PermissionStatus.DENIED_NOT_PERMANENTLY_NEWLY.value(), first.onlyMessage());
+
+        // No dialog and no system prompt, the last denied status is sent again
+        RecordingCallbackContext second = harness.ask();
+        assertEquals(PermissionStatus.DENIED_NOT_PERMANENTLY_NEWLY.value(), second.onlyMessage());
+        assertNull(harness.dialog());
+        assertEquals(1, harness.os.requestCount());
+        // The window is not extended by asking during it
+        assertEquals(1, PromptHistory.decode(storedHistory(harness)).size());
+
+        // Turning the backoff off asks again
+        harness.execute("configureBackoff", new JSONObject().put("cooldownMs", 0));
+        harness.ask();
+        assertEquals("Notifications", harness.dialogTitle());
+    }
+
+    private static String storedHistory(PluginHarness harness) {
+        for (Map.Entry<String, ?> entry : harness.preferences.getAll().entrySet()) {
+            if (entry.getKey().endsWith("prompt_history")) {
+                return (String) entry.getValue();
+            }
+        }
+        return null;
+    }
+}
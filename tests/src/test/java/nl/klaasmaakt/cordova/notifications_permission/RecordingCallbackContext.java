@@ -0,0 +1,72 @@
+package nl.klaasmaakt.cordova.notifications_permission;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+
+/**
+ * CallbackContext that records what the plugin sends instead of passing it to a WebView.
+ * Results sent after the callback has finished are counted, Cordova would drop them.
+ */
+final class RecordingCallbackContext extends CallbackContext {
+
+    private static final AtomicInteger sIds = new AtomicInteger();
+
+    private final List<PluginResult> mResults = new ArrayList<>();
+    private int mDropped;
+
+    RecordingCallbackContext() {
+        super("NotificationsPermission" + sIds.incrementAndGet(), null);
+    }
+
+    @Override
+    public synchronized void sendPluginResult(PluginResult pluginResult) {
+        if (finished) {
+            mDropped++;
+            return;
+        }
+        finished = !pluginResult.getKeepCallback();
+        mResults.add(pluginResult);
+    }
+
+    synchronized List<PluginResult> results() {
+        return new ArrayList<>(mResults);
+    }
+
+    /**
+     * @return The string messages of all results, in the order they were sent.
+     */
+    synchronized List<String> messages() {
+        List<String> messages = new ArrayList<>();
+        for (PluginResult result : mResults) {
+            messages.add(result.getStrMessage());
+        }
+        return messages;
+    }
+
+    /**
+     * @return The last result, or null if nothing has been sent.
+     */
+    synchronized PluginResult lastResult() {
+        return mResults.isEmpty() ? null : mResults.get(mResults.size() - 1);
+    }
+
+    /**
+     * @return The string message of the only result, failing if there is not exactly one.
+     */
+    synchronized String onlyMessage() {
+        if (mResults.size() != 1) {
+            throw new AssertionError("Expected one result, got " + messages());
+        }
+        return mResults.get(0).getStrMessage();
+    }
+
+    /**
+     * @return The number of results sent after the callback finished.
+     */
+    synchronized int droppedCount() {
+        return mDropped;
+    }
+}
@@ -0,0 +1,97 @@
+package nl.klaasmaakt.cordova.notifications_permission;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import android.os.Bundle;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * The state is loaded in the background at startup. Resuming and checking the status while it is
+ * still loading neither wait for it nor load it on the calling thread, their answers follow once
+ * it has been loaded.
+ */
+public class StateLoadingTest {
+
+    private static final long LOAD_MILLIS = 300;
+    // Far less than LOAD_MILLIS, far more than the calls take when they do not wait
+    private static final long RETURN_MILLIS = 100;
+
+    private final ExecutorService threadPool = Executors.newFixedThreadPool(2);
+
+    @After
+    public void shutDown() {
+        threadPool.shutdownNow();
+    }
+
+    private static void await(String what, BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Timed out waiting for " + what);
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void resumeAndCheckStatusDoNotWaitForTheState() throws InterruptedException {
+        PluginHarness harness = new PluginHarness(threadPool, LOAD_MILLIS);
+        long start = System.nanoTime();
+        harness.resume();
+        RecordingCallbackContext status = harness.execute("checkStatus");
+        long millis = (System.nanoTime() - start) / 1000000;
+        assertTrue("took " + millis + " ms", millis < RETURN_MILLIS);
+        assertTrue(status.results().isEmpty());
+
+        await("the status", () -> !status.results().isEmpty());
+        assertEquals(PermissionStatus.NOT_DETERMINED.value(), status.onlyMessage());
+        assertNotSame(Thread.currentThread(), harness.storageLoadThread);
+        // Loaded now, answered right away
+        assertEquals(PermissionStatus.NOT_DETERMINED.value(), harness.checkStatus());
+    }
+
+    @Test
+    public void grantedStatusDoesNotNeedTheState() {
+        PluginHarness harness = new PluginHarness(threadPool, LOAD_MILLIS);
+        harness.os.grantInSettings(PluginHarness.PERMISSION);
+        assertEquals(PermissionStatus.GRANTED_ALREADY.value(), harness.checkStatus());
+    }
+
+    @Test
+    public void restoredSettingsResultFollowsTheState() throws InterruptedException {
+        // Up to the last resort dialog on a harness that runs everything right away
+        PluginHarness harness = new PluginHarness();
+        harness.ask();
+        harness.os.deny();
+        harness.ask();
+        harness.clickPositive();
+        harness.os.deny();
+        harness.ask();
+        harness.os.deny();
+        assertEquals("Notifications are off", harness.dialogTitle());
+        harness.clickPositive();
+        Bundle saved = harness.plugin.onSaveInstanceState();
+        assertNotNull(saved);
+
+        // Android kills the process while the user is in settings, the new one loads the state slowly
+        PluginHarness restarted = harness.restart(threadPool, LOAD_MILLIS);
+        RecordingCallbackContext resumeCallback = new RecordingCallbackContext();
+        restarted.plugin.onRestoreStateForActivityResult(saved, resumeCallback);
+        restarted.os.grantInSettings(PluginHarness.PERMISSION);
+        long start = System.nanoTime();
+        restarted.resume();
+        long millis = (System.nanoTime() - start) / 1000000;
+        assertTrue("took " + millis + " ms", millis < RETURN_MILLIS);
+
+        await("the settings result", () -> !resumeCallback.results().isEmpty());
+        assertEquals(PermissionStatus.GRANTED_NEWLY_AFTER_SETTINGS.value(), resumeCallback.onlyMessage());
+        assertNotSame(Thread.currentThread(), restarted.storageLoadThread);
+    }
+}
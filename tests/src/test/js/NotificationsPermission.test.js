@@ -0,0 +1,93 @@
+/* The arguments www/NotificationsPermission.js sends to Android, checked against the layout
+ * NotificationsPermission.java reads: 6 for the rationale dialog, 7 for the last resort dialog,
+ * then the optional timeout. Run with: node --test src/test/js */
+const test = require("node:test");
+const assert = require("node:assert");
+const fs = require("node:fs");
+const path = require("node:path");
+
+const WWW = path.join(__dirname, "..", "..", "..", "..", "www");
+const DIALOG_ARGS = 13;
+const TIMEOUT_INDEX = 13;
+
+/* Load the plugin the way cordova.require does, with exec recording its calls. */
+function load(){
+	const calls = [];
+	const exec = function(success, error, service, action, args){
+		calls.push({action: action, args: args});
+	};
+	const window = {cordova: {notifications_permission: {}}};
+	const modules = {"cordova/exec": exec, "cordova": {platformId: "android"}};
+	const read = function(name){
+		const module = {exports: {}};
+		new Function("require", "module", "window", fs.readFileSync(path.join(WWW, name), "utf8"))(
+			function(id){ return modules[id]; }, module, window);
+		return module.exports;
+	};
+	const plugin = read("NotificationsPermission.js");
+	window.cordova.notifications_permission = plugin;
+	plugin.themes = read("Themes.js");
+	return {plugin: plugin, calls: calls};
+}
+
+function assertDefaultLastResort(args){
+	assert.deepStrictEqual(args.slice(6, 13), [
+		"true",
+		"Notification Permission",
+		"Notification permission has been set not to ask again! Please provide them from settings.",
+		"Settings",
+		"Cancel",
+		args[11],
+		""
+	]);
+	assert.strictEqual(typeof(args[11]), "number");
+}
+
+test("ask without dialogs sends both default dialogs and the timeout after them", function(){
+	const loaded = load();
+	loaded.plugin.ask(undefined, undefined, 5000);
+	const args = loaded.calls[0].args;
+	assert.strictEqual(args.length, DIALOG_ARGS + 1);
+	assert.deepStrictEqual(args.slice(3, 5), ["OK", "Not now"]);
+	assertDefaultLastResort(args);
+	assert.strictEqual(args[TIMEOUT_INDEX], 5000);
+});
+
+test("ask without dialogs twice sends the same arguments", function(){
+	const loaded = load();
+	loaded.plugin.ask();
+	loaded.plugin.ask();
+	assert.strictEqual(loaded.calls[0].args.length, DIALOG_ARGS);
+	assert.strictEqual(loaded.calls[0].args, loaded.calls[1].args);
+	assertDefaultLastResort(loaded.calls[0].args);
+});
+
+test("one object for both dialogs gets the defaults of each role", function(){
+	const loaded = load();
+	const dialog = {title: "Notifications"};
+	loaded.plugin.ask(dialog, dialog, 100);
+	const args = loaded.calls[0].args;
+	assert.strictEqual(args.length, DIALOG_ARGS + 1);
+	assert.deepStrictEqual(args.slice(1, 5), ["Notifications", "Permission is needed to show a notification on the lock screen.", "OK", "Not now"]);
+	assert.deepStrictEqual(args.slice(7, 11), ["Notifications", "Notification permission has been set not to ask again! Please provide them from settings.", "Settings", "Cancel"]);
+	assert.strictEqual(args[12], "");
+	assert.strictEqual(args[TIMEOUT_INDEX], 100);
+});
+
+test("a dialog used in one role first keeps the defaults of the other role", function(){
+	const loaded = load();
+	const dialog = {};
+	loaded.plugin.ask(dialog, {});
+	loaded.plugin.ask({}, dialog);
+	assert.strictEqual(loaded.calls[1].args.length, DIALOG_ARGS);
+	assertDefaultLastResort(loaded.calls[1].args);
+});
+
+test("the callback API sends the same layout", function(){
+	const loaded = load();
+	loaded.plugin.maybeAskPermission(function(){}, undefined, undefined, 5000);
+	const args = loaded.calls[0].args;
+	assert.strictEqual(args.length, DIALOG_ARGS + 1);
+	assertDefaultLastResort(args);
+	assert.strictEqual(args[TIMEOUT_INDEX], 5000);
+});
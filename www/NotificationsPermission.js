@@ -1,5 +1,12 @@
 let exec = require("cordova/exec");
 let cordova = require("cordova");	
+/* Caches of the Promise API: the normalized settings per dialog object and role, the arguments per pair of
+ * dialog objects and the result object per status. Stands in for dialog settings that are not given. */
+let rationaleDialogCache = new WeakMap();
+let lastResortDialogCache = new WeakMap();
+let dialogArgsCache = new WeakMap();
+let resultCache = {};
+let NO_DIALOG = Object.freeze({});
 let NotificationsPermission = {
 	/* Constants for the returned status of the permission. */
 	GRANTED_NEWLY_AFTER_RATIONALE: "granted_newly_after_rationale",
@@ -12,35 +19,23 @@ let NotificationsPermission = {
 	DENIED_NOT_PERMANENTLY_NEWLY: "denied_not_permanently_newly",
 	DENIED_PERMANENTLY_ALREADY_AFTER_SETTINGS: "denied_permanently_already_after_settings",
 	DENIED_THROUGH_RATIONALE_DIALOG: "denied_through_rationale_dialog",
-	DENIED_THROUGH_LAST_RESORT_DIALOG: "denied_trough_last_resort_dialog",
+	DENIED_THROUGH_LAST_RESORT_DIALOG: "denied_through_last_resort_dialog",
 	NOT_NEEDED: "not_needed",
+	NOT_DETERMINED: "not_determined",
+	TIMEOUT: "timeout",
+	CANCELLED: "cancelled",
 	NOT_ANDROID: "not_android",
 	ERROR: "error",
+	/* Version of the argument format of configure. */
+	CONFIG_VERSION: 1,
 	/**
 	 * Show a notification to the user asking for permission to post notifications to the lock screen.
+	 * Instead of the dialog settings, the id of dialogs registered with configure can be passed.
+	 * Optionally pass a timeout in milliseconds as last argument, after which TIMEOUT is returned.
 	 */
-	maybeAskPermission: function(onResult, rationaleDialog, lastResortDialog){
+	maybeAskPermission: function(onResult, rationaleDialog, lastResortDialog, timeoutMs){
 		/* Only for Android. Else return window.cordova.notifications_permission.NOT_ANDROID */
 		if(cordova.platformId === "android"){
-			
-			/* Make sure the arguments are all set for the rationaleDialog. 
-			 * rationaleDialog should be an Object. All others default to defaults. 
-			 */
-			let rationale = (typeof(rationaleDialog) === "undefined" || !this.isObject(rationaleDialog)) ? {} : rationaleDialog;
-			let rationaleShow = this.getBoolAsString(rationale, "show", "true");
-			let rationaleTitle = this.getString(rationale, "title", "Notification Permission");
-			let rationaleMsg = this.getString(rationale, "msg", "Permission is needed to show a notification on the lock screen.");
-			let rationaleOkButton =  this.getString(rationale, "okButton", "OK");
-			let rationaleCancelButton =  this.getString(rationale, "cancelButton", "Not now");
-			let rationaleTheme = this.getInt(rationale, "theme", window.cordova.notifications_permission.themes.Theme_DeviceDefault_Dialog_Alert);
-			
-			let lastResort = (typeof(lastResortDialog) === "undefined" || !this.isObject(lastResortDialog)) ? {} : lastResortDialog;
-			let lastResortShow = this.getBoolAsString(lastResort, "show", "true");
-			let lastResortTitle = this.getString(lastResort, "title", "Notification Permission");
-			let lastResortMsg = this.getString(lastResort, "msg", "Notification permission has been set not to ask again! Please provide them from settings.");
-			let lastResortOkButton =  this.getString(lastResort, "okButton", "Settings");
-			let lastResortCancelButton =  this.getString(lastResort, "cancelButton", "Cancel");
-			let lastResortTheme = this.getInt(lastResort, "theme", window.cordova.notifications_permission.themes.Theme_DeviceDefault_Dialog_Alert);
 			/* Call Android. Get 'status':
 			 *	- window.cordova.notifications_permission.NEWLY_GRANTED_AFTER_RATIONALE or 
 			 *  - window.cordova.notifications_permission.NEWLY_GRANTED_WITHOUT_RATIONALE or 
@@ -60,26 +55,371 @@ let NotificationsPermission = {
 			}, function(error){
 				console.log("error in cordova-plugin-notifications-permission", error);
 			}, "NotificationsPermission", "maybeAskPermission", 
-			[
-				rationaleShow,
-				rationaleTitle,
-				rationaleMsg, 
-				rationaleOkButton, 
-				rationaleCancelButton,
-				rationaleTheme,
-				lastResortShow,
-				lastResortTitle,
-				lastResortMsg, 
-				lastResortOkButton, 
-				lastResortCancelButton,
-				lastResortTheme
-			]);
+				typeof(rationaleDialog) === "string" ? this.withTimeout([rationaleDialog], lastResortDialog) : this.withTimeout(this.getDialogArgs(rationaleDialog, lastResortDialog), timeoutMs));
 		}
 		else{
 			/* return window.cordova.notifications_permission.NOT_ANDROID */
 			onResult(this.NOT_ANDROID);
 		}
 	},
+	/**
+	 * Ask several runtime permissions in one batch, without rationale or last resort dialogs.
+	 * onResult gets an object with the status of every permission, keyed by permission.
+	 */
+	maybeAskPermissions: function(onResult, permissions){
+		if(cordova.platformId === "android"){
+			exec(function(results){
+				onResult(results);
+			}, function(error){
+				console.log("error in cordova-plugin-notifications-permission", error);
+			}, "NotificationsPermission", "maybeAskPermissions", [permissions]);
+		}
+		else{
+			let results = {};
+			for(let i = 0; i < permissions.length; i++){
+				results[permissions[i]] = this.NOT_ANDROID;
+			}
+			onResult(results);
+		}
+	},
+	/**
+	 * Get the current status without showing any dialog. Returns GRANTED_ALREADY, NOT_NEEDED,
+	 * the last denied status, or NOT_DETERMINED when no request has been made yet.
+	 */
+	checkStatus: function(onResult){
+		if(cordova.platformId === "android"){
+			exec(function(status){
+				onResult(status);
+			}, function(error){
+				console.log("error in cordova-plugin-notifications-permission", error);
+			}, "NotificationsPermission", "checkStatus", []);
+		}
+		else{
+			onResult(this.NOT_ANDROID);
+		}
+	},
+	/**
+	 * Get notified when the permission is granted or revoked, e.g. in system settings.
+	 * onChange is called with the current status right away and after every change,
+	 * and once with CANCELLED when the watcher is stopped.
+	 */
+	watchPermission: function(onChange){
+		if(cordova.platformId === "android"){
+			exec(function(status){
+				onChange(status);
+			}, function(error){
+				console.log("error in cordova-plugin-notifications-permission", error);
+			}, "NotificationsPermission", "watchPermission", []);
+		}
+		else{
+			onChange(this.NOT_ANDROID);
+		}
+	},
+	/**
+	 * Stop all watchers started with watchPermission. Each is called once more, with CANCELLED.
+	 */
+	unwatchPermission: function(){
+		if(cordova.platformId === "android"){
+			exec(function(){}, function(error){
+				console.log("error in cordova-plugin-notifications-permission", error);
+			}, "NotificationsPermission", "unwatchPermission", []);
+		}
+	},
+	/**
+	 * Get the latency of each phase of the permission flows and the number of times each status has been returned.
+	 */
+	getMetrics: function(onResult){
+		if(cordova.platformId === "android"){
+			exec(function(metrics){
+				onResult(metrics);
+			}, function(error){
+				console.log("error in cordova-plugin-notifications-permission", error);
+			}, "NotificationsPermission", "getMetrics", []);
+		}
+		else{
+			onResult({phases: {}, statuses: {}});
+		}
+	},
+	/**
+	 * Promise version of maybeAskPermission. Resolves with a frozen result object, the same object
+	 * for every call that ends with the same status: {status, granted, denied}. Rejects when the dialog
+	 * settings are invalid or the call fails. Dialog settings objects are validated once and frozen, so
+	 * pass the same objects on every call. Instead of the dialog settings, a configure id can be passed.
+	 * Optionally pass a timeout in milliseconds as last argument, after which it resolves with TIMEOUT.
+	 */
+	ask: function(rationaleDialog, lastResortDialog, timeoutMs){
+		let self = this;
+		return new Promise(function(resolve, reject){
+			if(cordova.platformId !== "android"){
+				resolve(self.getResult(self.NOT_ANDROID));
+				return;
+			}
+			let args;
+			try{
+				args = typeof(rationaleDialog) === "string" ? self.withTimeout([rationaleDialog], lastResortDialog) : self.withTimeout(self.getCachedDialogArgs(rationaleDialog, lastResortDialog), timeoutMs);
+			}
+			catch(e){
+				reject(e);
+				return;
+			}
+			exec(function(status){
+				resolve(self.getResult(status));
+			}, function(error){
+				reject(self.toError(error));
+			}, "NotificationsPermission", "maybeAskPermission", args);
+		});
+	},
+	/**
+	 * Promise version of checkStatus. Resolves with the same frozen result objects as ask.
+	 */
+	status: function(){
+		let self = this;
+		return new Promise(function(resolve, reject){
+			if(cordova.platformId !== "android"){
+				resolve(self.getResult(self.NOT_ANDROID));
+				return;
+			}
+			exec(function(status){
+				resolve(self.getResult(status));
+			}, function(error){
+				reject(self.toError(error));
+			}, "NotificationsPermission", "checkStatus", []);
+		});
+	},
+	/**
+	 * End the permission request in progress: a rationale or last resort dialog that is showing is
+	 * dismissed, and the request returns CANCELLED.
+	 */
+	cancel: function(onDone){
+		if(cordova.platformId === "android"){
+			exec(function(){
+				if(typeof(onDone) === "function"){
+					onDone();
+				}
+			}, function(error){
+				console.log("error in cordova-plugin-notifications-permission", error);
+			}, "NotificationsPermission", "cancel", []);
+		}
+		else if(typeof(onDone) === "function"){
+			onDone();
+		}
+	},
+	/**
+	 * Get the importance and blocked state of all notification channels and channel groups in one call.
+	 * With onlyChanged, only what changed since the previous call is returned.
+	 */
+	getChannelStates: function(onResult, onlyChanged){
+		if(cordova.platformId === "android"){
+			exec(function(states){
+				onResult(states);
+			}, function(error){
+				console.log("error in cordova-plugin-notifications-permission", error);
+			}, "NotificationsPermission", "getChannelStates", [onlyChanged === true]);
+		}
+		else{
+			onResult({enabled: false, channels: [], groups: [], removedChannels: [], removedGroups: []});
+		}
+	},
+	/**
+	 * Get the funnel counters collected on the device since the last call, and reset them.
+	 */
+	drainAnalytics: function(onResult){
+		if(cordova.platformId === "android"){
+			exec(function(analytics){
+				onResult(analytics);
+			}, function(error){
+				console.log("error in cordova-plugin-notifications-permission", error);
+			}, "NotificationsPermission", "drainAnalytics", []);
+		}
+		else{
+			onResult({statuses: {}, transitions: {}, phases: {}, settingsRoundTrip: {count: 0, totalMillis: 0, maxMillis: 0}});
+		}
+	},
+	/**
+	 * Register the rationale and last resort dialogs once under configId. Afterwards call
+	 * maybeAskPermission(onResult, configId) so the settings do not have to be sent and parsed again.
+	 */
+	configure: function(configId, rationaleDialog, lastResortDialog, onDone){
+		if(cordova.platformId === "android"){
+			let args = this.getDialogArgs(rationaleDialog, lastResortDialog);
+			exec(function(){
+				if(typeof(onDone) === "function"){
+					onDone();
+				}
+			}, function(error){
+				console.log("error in cordova-plugin-notifications-permission", error);
+			}, "NotificationsPermission", "configure", 
+			[
+				this.CONFIG_VERSION,
+				configId,
+				args[0] === "true",
+				args[1],
+				args[2],
+				args[3],
+				args[4],
+				args[5],
+				args[6] === "true",
+				args[7],
+				args[8],
+				args[9],
+				args[10],
+				args[11],
+				args[12]
+			]);
+		}
+		else if(typeof(onDone) === "function"){
+			onDone();
+		}
+	},
+	/**
+	 * Hold back maybeAskPermission after the user denied: for cooldownMs after a denial, growing by
+	 * backoffFactor for every further denial in a row up to maxCooldownMs, the last denied status is
+	 * returned without asking. Pass {cooldownMs: 0} to turn it off again.
+	 */
+	configureBackoff: function(options, onDone){
+		if(cordova.platformId === "android"){
+			exec(function(){
+				if(typeof(onDone) === "function"){
+					onDone();
+				}
+			}, function(error){
+				console.log("error in cordova-plugin-notifications-permission", error);
+			}, "NotificationsPermission", "configureBackoff", [options]);
+		}
+		else if(typeof(onDone) === "function"){
+			onDone();
+		}
+	},
+	/**
+	 * Prepare the rationale and last resort dialogs up front. Later calls to maybeAskPermission
+	 * with the same dialog settings reuse the prepared dialogs, which makes them show faster.
+	 */
+	prewarmDialogs: function(rationaleDialog, lastResortDialog){
+		if(cordova.platformId === "android"){
+			exec(function(){}, function(error){
+				console.log("error in cordova-plugin-notifications-permission", error);
+			}, "NotificationsPermission", "prewarmDialogs", this.getDialogArgs(rationaleDialog, lastResortDialog));
+		}
+	},
+	/* Private function to build the arguments for the dialogs, as expected by Android. */
+	getDialogArgs(rationaleDialog, lastResortDialog){
+		/* Make sure the arguments are all set for the rationaleDialog. 
+		 * rationaleDialog should be an Object. All others default to defaults. 
+		 */
+		let rationale = (typeof(rationaleDialog) === "undefined" || !this.isObject(rationaleDialog)) ? {} : rationaleDialog;
+		let rationaleShow = this.getBoolAsString(rationale, "show", "true");
+		let rationaleTitle = this.getString(rationale, "title", "Notification Permission");
+		let rationaleMsg = this.getString(rationale, "msg", "Permission is needed to show a notification on the lock screen.");
+		let rationaleOkButton =  this.getString(rationale, "okButton", "OK");
+		let rationaleCancelButton =  this.getString(rationale, "cancelButton", "Not now");
+		let rationaleTheme = this.getInt(rationale, "theme", window.cordova.notifications_permission.themes.Theme_DeviceDefault_Dialog_Alert);
+		let lastResort = (typeof(lastResortDialog) === "undefined" || !this.isObject(lastResortDialog)) ? {} : lastResortDialog;
+		let lastResortShow = this.getBoolAsString(lastResort, "show", "true");
+		let lastResortTitle = this.getString(lastResort, "title", "Notification Permission");
+		let lastResortMsg = this.getString(lastResort, "msg", "Notification permission has been set not to ask again! Please provide them from settings.");
+		let lastResortOkButton =  this.getString(lastResort, "okButton", "Settings");
+		let lastResortCancelButton =  this.getString(lastResort, "cancelButton", "Cancel");
+		let lastResortTheme = this.getInt(lastResort, "theme", window.cordova.notifications_permission.themes.Theme_DeviceDefault_Dialog_Alert);
+		let lastResortChannelId = this.getString(lastResort, "channelId", "");
+		return [
+			rationaleShow,
+			rationaleTitle,
+			rationaleMsg, 
+			rationaleOkButton, 
+			rationaleCancelButton,
+			rationaleTheme,
+			lastResortShow,
+			lastResortTitle,
+			lastResortMsg, 
+			lastResortOkButton, 
+			lastResortCancelButton,
+			lastResortTheme,
+			lastResortChannelId
+		];
+	},
+	/* Private function to get the arguments for the dialogs of the Promise API, validated and built once per pair of objects. */
+	getCachedDialogArgs(rationaleDialog, lastResortDialog){
+		let rationaleKey = typeof(rationaleDialog) === "undefined" ? NO_DIALOG : rationaleDialog;
+		let lastResortKey = typeof(lastResortDialog) === "undefined" ? NO_DIALOG : lastResortDialog;
+		let rationale = this.getCachedDialog(rationaleKey, "rationale");
+		let lastResort = this.getCachedDialog(lastResortKey, "last resort");
+		let byLastResort = dialogArgsCache.get(rationaleKey);
+		if(typeof(byLastResort) === "undefined"){
+			byLastResort = new WeakMap();
+			dialogArgsCache.set(rationaleKey, byLastResort);
+		}
+		let args = byLastResort.get(lastResortKey);
+		if(typeof(args) === "undefined"){
+			args = Object.freeze(rationale.concat(lastResort));
+			byLastResort.set(lastResortKey, args);
+		}
+		return args;
+	},
+	/* Private function to validate and freeze the settings of one dialog, and normalize them to the arguments expected by Android. */
+	getCachedDialog(dialog, name){
+		if(dialog === null || typeof(dialog) !== "object"){
+			throw new TypeError("cordova-plugin-notifications-permission: the " + name + " dialog settings should be an object");
+		}
+		let isRationale = name === "rationale";
+		/* Per role, as the same object can be passed for both dialogs and the defaults differ. */
+		let cache = isRationale ? rationaleDialogCache : lastResortDialogCache;
+		let normalized = cache.get(dialog);
+		if(typeof(normalized) !== "undefined"){
+			return normalized;
+		}
+		let show = dialog.show;
+		if(typeof(show) !== "undefined" && show !== true && show !== false && show !== "true" && show !== "false"){
+			throw new TypeError("cordova-plugin-notifications-permission: " + name + " show should be a boolean");
+		}
+		let texts = ["title", "msg", "okButton", "cancelButton", "channelId"];
+		for(let i = 0; i < texts.length; i++){
+			if(typeof(dialog[texts[i]]) !== "undefined" && typeof(dialog[texts[i]]) !== "string"){
+				throw new TypeError("cordova-plugin-notifications-permission: " + name + " " + texts[i] + " should be a string");
+			}
+		}
+		let theme = dialog.theme;
+		if(typeof(theme) !== "undefined" && !Number.isInteger(theme)){
+			throw new TypeError("cordova-plugin-notifications-permission: " + name + " theme should be an integer");
+		}
+		normalized = [
+			show === false || show === "false" ? "false" : "true",
+			this.getString(dialog, "title", "Notification Permission"),
+			this.getString(dialog, "msg", isRationale ? "Permission is needed to show a notification on the lock screen." : "Notification permission has been set not to ask again! Please provide them from settings."),
+			this.getString(dialog, "okButton", isRationale ? "OK" : "Settings"),
+			this.getString(dialog, "cancelButton", isRationale ? "Not now" : "Cancel"),
+			typeof(theme) === "undefined" ? window.cordova.notifications_permission.themes.Theme_DeviceDefault_Dialog_Alert : theme
+		];
+		if(!isRationale){
+			/* Only the last resort dialog opens system settings. */
+			normalized.push(this.getString(dialog, "channelId", ""));
+		}
+		Object.freeze(normalized);
+		/* Frozen, so the cached arguments cannot get out of date. */
+		Object.freeze(dialog);
+		cache.set(dialog, normalized);
+		return normalized;
+	},
+	/* Private function to add the timeout to the arguments of maybeAskPermission, if one is given. */
+	withTimeout(args, timeoutMs){
+		return typeof(timeoutMs) === "number" && timeoutMs > 0 ? args.concat([timeoutMs]) : args;
+	},
+	/* Private function to get the shared, frozen result object of a status. */
+	getResult(status){
+		let result = resultCache[status];
+		if(typeof(result) === "undefined"){
+			result = Object.freeze({
+				status: status,
+				granted: status.indexOf("granted_") === 0,
+				denied: status.indexOf("denied_") === 0
+			});
+			resultCache[status] = result;
+		}
+		return result;
+	},
+	/* Private function to turn the error of a call into an Error to reject with. */
+	toError(error){
+		return error instanceof Error ? error : new Error("cordova-plugin-notifications-permission: " + error);
+	},
 	/* Private functions to do typechecks and set defaults. */
 	getString(obj, key, defaultString){
 		return typeof(obj[key]) === "string" ? obj[key] : defaultString;
@@ -88,32 +428,16 @@ let NotificationsPermission = {
 		return typeof(obj[key]) !== "undefined" && parseInt(obj[key]) ? parseInt(obj[key]) : defaultInt;
 	},
 	getBoolAsString(obj, key, defaultBool){
-	    let output = "";
-	    if(typeof(obj[key]) === "undefined"){
-	        obj[key] = defaultBool.toString();
-	    }
-        if(obj[key] === true || obj[key] === "true"){
-            output = "true";
-        }
-        else{
-            output = "false";
+	    /* Does not write the default into obj, the options of the caller are left as they are. */
+	    let value = typeof(obj[key]) === "undefined" ? defaultBool.toString() : obj[key];
+        if(value === true || value === "true"){
+            return "true";
         }
-        return output;
+        return "false";
     },
 	/* Private function to make sure we have an object as parameter to maybeAskPermission */
 	isObject(obj) {
-	    try {
-	        // Test obj with in operator
-	        0 in obj;// Throws TypeError if obj is not an object.
-	        var isObject = true;// var works here due to hoisting
-	    }
-	    catch (e) {
-	        // obj is not an object if e is a TypeError.
-	        // But if e.constructor == Error or DOMException then obj is an object.
-	        // If you don't care about security errors you can remove this:
-	        isObject = e.constructor!=TypeError;
-	    }
-	    return isObject;
+	    return (typeof(obj) === "object" && obj !== null) || typeof(obj) === "function";
 	}
 };
 